@@ -0,0 +1,71 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+
+//every pipeline stage as a no-argument call over one synthetic dataset, with its inputs prepared up front.
+//JMH refuses benchmark classes in the default package and named packages cannot see this one at compile
+//time, so benchmarks.PipelineBenchmark reaches these public methods through method handles.
+public class PipelineStages {
+    private final CSVHandler csvh = new CSVHandler();
+    private final File csv;
+    private final RawTable raw;
+    private final NormalizationFactors normalizationFactors;
+    private final Dataset processed;
+    private final LassoTrainer trainer;
+    private final LassoModel model;
+    private final double[] weights;
+    private final double bias;
+
+    private final RealMatrix Xt;
+    private final RealVector Y, W;
+
+    public PipelineStages(int rows, int columns, int cardinality) throws IOException {
+        csv = new SyntheticHousingData(csvh).write(rows, columns, cardinality, 42);
+        raw = csvh.readColumns(csv.getPath());
+        normalizationFactors = (NormalizationFactors)normalizationFactors();
+        processed = (Dataset)processData();
+
+        Random random = new Random(42);
+        weights = random.doubles(processed.numColumns()).toArray();
+        bias = random.nextDouble();
+        trainer = TrainingEngine.FUSED.create(processed, Main.LEARNING_RATE);
+        model = new LassoModel(Main.LASSO_LAMBDA_START, weights, bias, 0, 0);
+
+        Xt = new Array2DRowRealMatrix(processed.getColumns(), false);
+        Y = new ArrayRealVector(processed.getTarget(), false);
+        W = new ArrayRealVector(weights, false);
+    }
+
+    public Object readCSV(){ return csvh.readCSV(csv.getPath()); }
+
+    public Object streamColumns(){ return csvh.readColumns(csv.getPath()); }
+
+    public Object normalizationFactors(){
+        NormalizationFactors nF = new NormalizationFactors();
+        csvh.calculateNormalizationFactors(nF, raw, SyntheticHousingData.DEPENDENT_VARIABLE,
+                true, SyntheticHousingData.OTHER_CATEGORICAL, SyntheticHousingData.EXCLUDED);
+        return nF;
+    }
+
+    public Object processData(){
+        return csvh.processData(false, normalizationFactors, raw, SyntheticHousingData.DEPENDENT_VARIABLE);
+    }
+
+    public Object correlationScreen(){ return CorrelationScreen.screen(processed.getColumns(), .6); }
+
+    //one iteration of the original RealMatrix loop
+    public Object commonsMathIteration(){
+        RealVector predictedY = Xt.preMultiply(W).mapAdd(bias);
+        RealVector updated = Main.updateWeights(Xt, Y, predictedY, W, Main.LASSO_LAMBDA_START);
+        return Main.updateBias(Y, predictedY, bias) + updated.getEntry(0) + Main.meanAbsolutePercentageError(Y, predictedY);
+    }
+
+    public Object fusedIteration(){ return trainer.train(Main.LASSO_LAMBDA_START, weights, bias, 1, 0); }
+
+    public Object score(){ return model.predict(processed); }
+}
@@ -0,0 +1,87 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+//writes synthetic CSVs shaped like Data/Raw/train.csv.
+//every raw field keeps its type, range and NA rate, categorical fields either keep their levels or get
+//cardinality synthetic ones, and fields are repeated (suffixed _2, _3...) or cut to reach the column count.
+class SyntheticHousingData {
+    static final String SCHEMA = "Data/Raw/train.csv",
+                        DEPENDENT_VARIABLE = "SalePrice";
+    static final ArrayList<String> EXCLUDED = new ArrayList<>(Arrays.asList("Id")),
+                                   OTHER_CATEGORICAL = new ArrayList<>(Arrays.asList("MSSubClass", "OverallQual", "OverallCond"));
+
+    private final RawColumn[] fields;
+
+    SyntheticHousingData(CSVHandler csvh){
+        ArrayList<RawColumn> schema = new ArrayList<>();
+        for(RawColumn column : csvh.readColumns(SCHEMA).getColumns())
+            if(!EXCLUDED.contains(column.getName()) && !column.getName().equals(DEPENDENT_VARIABLE))
+                schema.add(column);
+        fields = schema.toArray(new RawColumn[0]);
+    }
+
+    int schemaColumns(){ return fields.length; }
+
+    //rows of Id, columns feature fields and SalePrice, cardinality 0 keeps the schema's levels
+    File write(int rows, int columns, int cardinality, long seed) throws IOException {
+        File file = File.createTempFile("synthetic-housing-", ".csv");
+        file.deleteOnExit();
+        Random random = new Random(seed);
+        try(BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)){
+            writer.write("Id");
+            for(int c = 0; c<columns; c++)
+                writer.write("," + name(c));
+            writer.write("," + DEPENDENT_VARIABLE);
+            writer.newLine();
+
+            StringBuilder line = new StringBuilder();
+            for(int r = 0; r<rows; r++){
+                line.setLength(0);
+                line.append(r + 1);
+                double price = 50000;
+                for(int c = 0; c<columns; c++){
+                    RawColumn field = fields[c % fields.length];
+                    line.append(',');
+                    if(field.isNumeric() && !OTHER_CATEGORICAL.contains(field.getName())){
+                        ColumnProfile profile = field.getProfile();
+                        if(random.nextDouble() * profile.getCount() < profile.getNACount()) line.append("NA");
+                        else{
+                            double value = profile.getMinimum() + random.nextDouble() * (profile.getMaximum() - profile.getMinimum());
+                            long rounded = Math.round(value);
+                            line.append(rounded);
+                            price += rounded % 97 * 20;
+                        }
+                    }
+                    else if(cardinality > 0) line.append("L").append(random.nextInt(cardinality));
+                    else{
+                        String[] levels = levels(field);
+                        line.append(levels[random.nextInt(levels.length)]);
+                    }
+                }
+                line.append(',').append(Math.round(price + random.nextDouble() * 100000));
+                writer.write(line.toString());
+                writer.newLine();
+            }
+        }
+        return file;
+    }
+
+    private String name(int c){
+        String name = fields[c % fields.length].getName();
+        return c < fields.length ? name : name + "_" + (c / fields.length + 1);
+    }
+
+    private static String[] levels(RawColumn field){
+        if(field.hasDictionary()) return field.getLevels();
+        String[] levels = new String[field.numRows()];
+        for(int r = 0; r<levels.length; r++)
+            levels[r] = field.getString(r);
+        return levels;
+    }
+}
@@ -0,0 +1,26 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+//entry point of target/benchmarks.jar: the usual JMH command line with the GC profiler always on,
+//so every stage reports its allocation rate (gc.alloc.rate.norm is bytes per operation). e.g.
+//  mvn -B -Pbenchmark package -DskipTests
+//  java -jar target/benchmarks.jar fusedIteration -p rows=100000 -rf json -rff baseline.json
+//run it from the project root, the synthetic data is generated from Data/Raw/train.csv.
+//forks get --add-modules=jdk.incubator.vector, pass -jvmArgsAppend "" to measure the scalar kernels.
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(commandLine).addProfiler(GCProfiler.class);
+        //forks load the Vector API kernels unless -jvmArgsAppend says otherwise
+        if(!commandLine.getJvmArgsAppend().hasValue())
+            options.jvmArgsAppend("--add-modules=jdk.incubator.vector");
+        new Runner(options.build()).run();
+    }
+}
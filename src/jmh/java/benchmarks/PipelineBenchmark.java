@@ -0,0 +1,98 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//one benchmark per pipeline stage over synthetic data generated from the train.csv schema.
+//the stages live in the default package (PipelineStages), so they are called through static final
+//method handles, which the JIT inlines like a direct call.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+    private static final Class<?> STAGES;
+    private static final MethodHandle CREATE, READ_CSV, STREAM_COLUMNS, NORMALIZATION_FACTORS, PROCESS_DATA,
+            CORRELATION_SCREEN, COMMONS_MATH_ITERATION, FUSED_ITERATION, SCORE;
+    static {
+        try {
+            STAGES = Class.forName("PipelineStages");
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            CREATE = lookup.findConstructor(STAGES, MethodType.methodType(void.class, int.class, int.class, int.class))
+                    .asType(MethodType.methodType(Object.class, int.class, int.class, int.class));
+            READ_CSV = stage(lookup, "readCSV");
+            STREAM_COLUMNS = stage(lookup, "streamColumns");
+            NORMALIZATION_FACTORS = stage(lookup, "normalizationFactors");
+            PROCESS_DATA = stage(lookup, "processData");
+            CORRELATION_SCREEN = stage(lookup, "correlationScreen");
+            COMMONS_MATH_ITERATION = stage(lookup, "commonsMathIteration");
+            FUSED_ITERATION = stage(lookup, "fusedIteration");
+            SCORE = stage(lookup, "score");
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle stage(MethodHandles.Lookup lookup, String name) throws ReflectiveOperationException {
+        return lookup.findVirtual(STAGES, name, MethodType.methodType(Object.class))
+                .asType(MethodType.methodType(Object.class, Object.class));
+    }
+
+    @Param({"1460", "100000"})
+    public int rows;
+
+    @Param({"79", "300"})
+    public int columns;
+
+    //0 keeps the schema's own levels
+    @Param({"0", "1000"})
+    public int cardinality;
+
+    private Object stages;
+
+    @Setup(Level.Trial)
+    public void setup() throws Throwable {
+        stages = (Object)CREATE.invokeExact(rows, columns, cardinality);
+    }
+
+    @Benchmark
+    public Object readCSV() throws Throwable { return (Object)READ_CSV.invokeExact(stages); }
+
+    @Benchmark
+    public Object streamColumns() throws Throwable { return (Object)STREAM_COLUMNS.invokeExact(stages); }
+
+    @Benchmark
+    public Object normalizationFactors() throws Throwable { return (Object)NORMALIZATION_FACTORS.invokeExact(stages); }
+
+    @Benchmark
+    public Object processData() throws Throwable { return (Object)PROCESS_DATA.invokeExact(stages); }
+
+    @Benchmark
+    public Object correlationScreen() throws Throwable { return (Object)CORRELATION_SCREEN.invokeExact(stages); }
+
+    @Benchmark
+    public Object commonsMathIteration() throws Throwable { return (Object)COMMONS_MATH_ITERATION.invokeExact(stages); }
+
+    @Benchmark
+    public Object fusedIteration() throws Throwable { return (Object)FUSED_ITERATION.invokeExact(stages); }
+
+    @Benchmark
+    public Object score() throws Throwable { return (Object)SCORE.invokeExact(stages); }
+}
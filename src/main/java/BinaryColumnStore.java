@@ -0,0 +1,263 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+//binary columnar files for processed data and normalization factors, read back through FileChannel.map.
+//
+//processed data layout (little-endian):
+//  int magic, int version, int rows, int columns
+//  per column: byte role, byte type, int nameLength, name bytes (UTF-8), long offset
+//  blocks, 8 byte aligned and mapped one at a time: DOUBLE = rows doubles, BITS = ceil(rows/64) longs with bit r set where row r is 1
+//
+//normalization factor layout:
+//  int magic, int version, int fields
+//  per field: byte type, string name, then min, max and NA fill doubles (continuous, NaN for no fill)
+//  or int count + strings (categorical)
+//  or, for the pruned columns row, int count + strings with no name
+class BinaryColumnStore {
+    private static final int DATA_MAGIC = 0x4D4C4344, //"MLCD"
+                             FACTOR_MAGIC = 0x4D4C4346, //"MLCF"
+                             DATA_VERSION = 1,
+                             FACTOR_VERSION = 3;
+    private static final byte ROLE_FEATURE = 0, ROLE_TARGET = 1, ROLE_ID = 2;
+    private static final byte TYPE_DOUBLE = 0, TYPE_BITS = 1;
+    private static final byte CONTINUOUS = 0, CATEGORICAL = 1, PRUNED = 2;
+
+    private BinaryColumnStore(){}
+
+    static void writeDataset(String directory, Dataset data) throws IOException {
+        int columns = data.numColumns() + (data.hasTarget() ? 1 : 0) + (data.hasIds() ? 1 : 0);
+        double[][] blocks = new double[columns][];
+        String[] names = new String[columns];
+        byte[] roles = new byte[columns], types = new byte[columns];
+        int c = 0;
+        for(int i = 0; i<data.numColumns(); i++, c++){
+            blocks[c] = data.getColumn(i);
+            names[c] = data.getName(i);
+            roles[c] = ROLE_FEATURE;
+        }
+        if(data.hasTarget()){
+            blocks[c] = data.getTarget();
+            names[c] = "target";
+            roles[c++] = ROLE_TARGET;
+        }
+        if(data.hasIds()){
+            blocks[c] = data.getIds();
+            names[c] = "id";
+            roles[c] = ROLE_ID;
+        }
+
+        long headerSize = 4 * Integer.BYTES;
+        byte[][] encodedNames = new byte[columns][];
+        for(int i = 0; i<columns; i++){
+            types[i] = isBinary(blocks[i]) ? TYPE_BITS : TYPE_DOUBLE;
+            encodedNames[i] = names[i].getBytes(StandardCharsets.UTF_8);
+            headerSize += 2 + Integer.BYTES + encodedNames[i].length + Long.BYTES;
+        }
+        long[] offsets = new long[columns];
+        long size = align(headerSize);
+        for(int i = 0; i<columns; i++){
+            offsets[i] = size;
+            size += blockSize(types[i], data.numRows());
+        }
+
+        try(RandomAccessFile file = new RandomAccessFile(directory, "rw"); FileChannel channel = file.getChannel()){
+            file.setLength(size);
+            MappedByteBuffer header = map(channel, FileChannel.MapMode.READ_WRITE, 0, headerSize, directory);
+            header.putInt(DATA_MAGIC).putInt(DATA_VERSION).putInt(data.numRows()).putInt(columns);
+            for(int i = 0; i<columns; i++){
+                header.put(roles[i]).put(types[i]).putInt(encodedNames[i].length).put(encodedNames[i]).putLong(offsets[i]);
+            }
+            header.force();
+            //one mapping per block, so the file can pass 2 GiB as long as each column stays under it
+            for(int i = 0; i<columns; i++){
+                MappedByteBuffer block = map(channel, FileChannel.MapMode.READ_WRITE, offsets[i], blockSize(types[i], data.numRows()), directory);
+                if(types[i] == TYPE_DOUBLE)
+                    block.asDoubleBuffer().put(blocks[i]);
+                else
+                    block.asLongBuffer().put(pack(blocks[i]));
+                block.force();
+            }
+        }
+    }
+
+    static Dataset readDataset(String directory) throws IOException {
+        try(RandomAccessFile file = new RandomAccessFile(directory, "r"); FileChannel channel = file.getChannel()){
+            //the header sits before the first block, which is at most the whole file
+            MappedByteBuffer buffer = map(channel, FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), Integer.MAX_VALUE), directory);
+            checkHeader(buffer, DATA_MAGIC, DATA_VERSION, directory);
+            int rows = buffer.getInt(), columns = buffer.getInt();
+
+            ArrayList<String> names = new ArrayList<>();
+            ArrayList<double[]> features = new ArrayList<>();
+            double[] target = null, ids = null;
+            for(int i = 0; i<columns; i++){
+                byte role = buffer.get(), type = buffer.get();
+                String name = readString(buffer);
+                long offset = buffer.getLong();
+                double[] block = readBlock(channel, type, offset, rows, directory);
+                if(role == ROLE_TARGET) target = block;
+                else if(role == ROLE_ID) ids = block;
+                else{
+                    names.add(name);
+                    features.add(block);
+                }
+            }
+            return new Dataset(names.toArray(new String[0]), features.toArray(new double[0][]), target, ids);
+        }
+    }
+
+    static void writeNormalizationFactors(String directory, ArrayList<ArrayList<String>> normalizationFactors) throws IOException {
+        long size = 3 * Integer.BYTES;
+        for(ArrayList<String> nF : normalizationFactors){
+            if(nF.get(0).equals("Pruned")){
+                size += 1 + Integer.BYTES;
+                for(int j = 1; j<nF.size(); j++)
+                    size += encodedLength(nF.get(j));
+                continue;
+            }
+            size += 1 + encodedLength(nF.get(1));
+            if(nF.get(0).equals("Categorical")){
+                size += Integer.BYTES;
+                for(int j = 2; j<nF.size(); j++)
+                    size += encodedLength(nF.get(j));
+            }
+            else size += 3 * Double.BYTES;
+        }
+
+        try(RandomAccessFile file = new RandomAccessFile(directory, "rw"); FileChannel channel = file.getChannel()){
+            file.setLength(size);
+            MappedByteBuffer buffer = map(channel, FileChannel.MapMode.READ_WRITE, 0, size, directory);
+            buffer.putInt(FACTOR_MAGIC).putInt(FACTOR_VERSION).putInt(normalizationFactors.size());
+            for(ArrayList<String> nF : normalizationFactors){
+                if(nF.get(0).equals("Pruned")){
+                    buffer.put(PRUNED).putInt(nF.size()-1);
+                    for(int j = 1; j<nF.size(); j++)
+                        writeString(buffer, nF.get(j));
+                    continue;
+                }
+                boolean categorical = nF.get(0).equals("Categorical");
+                buffer.put(categorical ? CATEGORICAL : CONTINUOUS);
+                writeString(buffer, nF.get(1));
+                if(categorical){
+                    buffer.putInt(nF.size()-2);
+                    for(int j = 2; j<nF.size(); j++)
+                        writeString(buffer, nF.get(j));
+                }
+                else buffer.putDouble(Double.parseDouble(nF.get(2)))
+                        .putDouble(Double.parseDouble(nF.get(3)))
+                        .putDouble(nF.size() > 4 ? Double.parseDouble(nF.get(4)) : Double.NaN);
+            }
+            buffer.force();
+        }
+    }
+
+    //returns the same nested lists readNormalizationFactors builds from the CSV
+    static ArrayList<ArrayList<String>> readNormalizationFactors(String directory) throws IOException {
+        try(RandomAccessFile file = new RandomAccessFile(directory, "r"); FileChannel channel = file.getChannel()){
+            MappedByteBuffer buffer = map(channel, FileChannel.MapMode.READ_ONLY, 0, channel.size(), directory);
+            checkHeader(buffer, FACTOR_MAGIC, FACTOR_VERSION, directory);
+            int fields = buffer.getInt();
+            ArrayList<ArrayList<String>> normalizationFactors = new ArrayList<>(fields);
+            for(int i = 0; i<fields; i++){
+                ArrayList<String> nF = new ArrayList<>();
+                byte type = buffer.get();
+                if(type == PRUNED){
+                    nF.add("Pruned");
+                    int count = buffer.getInt();
+                    for(int j = 0; j<count; j++)
+                        nF.add(readString(buffer));
+                    normalizationFactors.add(nF);
+                    continue;
+                }
+                boolean categorical = type == CATEGORICAL;
+                nF.add(categorical ? "Categorical" : "Continuous");
+                nF.add(readString(buffer));
+                if(categorical){
+                    int levels = buffer.getInt();
+                    for(int j = 0; j<levels; j++)
+                        nF.add(readString(buffer));
+                }
+                else{
+                    nF.add(buffer.getDouble()+"");
+                    nF.add(buffer.getDouble()+"");
+                    double fill = buffer.getDouble();
+                    if(!Double.isNaN(fill)) nF.add(fill+"");
+                }
+                normalizationFactors.add(nF);
+            }
+            return normalizationFactors;
+        }
+    }
+
+    private static void checkHeader(MappedByteBuffer buffer, int magic, int expectedVersion, String directory) throws IOException {
+        if(buffer.getInt() != magic)
+            throw new IOException(directory + " is not a binary column store file");
+        int version = buffer.getInt();
+        if(version != expectedVersion)
+            throw new IOException(directory + " has version " + version + ", expected " + expectedVersion);
+    }
+
+    //one bulk copy out of the block's own mapping, no parsing
+    private static double[] readBlock(FileChannel channel, byte type, long offset, int rows, String directory) throws IOException {
+        long size = blockSize(type, rows);
+        if(offset < 0 || offset + size > channel.size())
+            throw new IOException(directory + " is truncated, a block ends past the end of the file");
+        MappedByteBuffer buffer = map(channel, FileChannel.MapMode.READ_ONLY, offset, size, directory);
+        double[] block = new double[rows];
+        if(type == TYPE_DOUBLE)
+            buffer.asDoubleBuffer().get(block);
+        else{
+            long[] bits = new long[(rows + 63) >>> 6];
+            buffer.asLongBuffer().get(bits);
+            for(int r = 0; r<rows; r++)
+                if((bits[r >>> 6] & (1L << r)) != 0) block[r] = 1;
+        }
+        return block;
+    }
+
+    //a mapping is capped at 2 GiB, past that the caller gets an IOException it can fall back from
+    private static MappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long position, long size, String directory) throws IOException {
+        if(size > Integer.MAX_VALUE)
+            throw new IOException(directory + " has a " + size + " byte region, more than one mapping can hold");
+        MappedByteBuffer buffer = channel.map(mode, position, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private static boolean isBinary(double[] column){
+        for(double d : column)
+            if(d != 0 && d != 1) return false;
+        return true;
+    }
+
+    private static long[] pack(double[] column){
+        long[] bits = new long[(column.length + 63) >>> 6];
+        for(int r = 0; r<column.length; r++)
+            if(column[r] == 1) bits[r >>> 6] |= 1L << r;
+        return bits;
+    }
+
+    private static long blockSize(byte type, int rows){
+        return type == TYPE_DOUBLE ? (long)rows * Double.BYTES : (long)((rows + 63) >>> 6) * Long.BYTES;
+    }
+
+    private static long align(long position){ return (position + 7) & ~7L; }
+
+    private static int encodedLength(String s){ return Integer.BYTES + s.getBytes(StandardCharsets.UTF_8).length; }
+
+    private static void writeString(MappedByteBuffer buffer, String s){
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length).put(bytes);
+    }
+
+    private static String readString(MappedByteBuffer buffer){
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
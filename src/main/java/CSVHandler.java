@@ -1,75 +1,368 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Scanner;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import au.com.bytecode.opencsv.CSVReader;
 import au.com.bytecode.opencsv.CSVWriter;
 import org.apache.commons.math3.linear.RealMatrix;
-import org.apache.commons.math3.stat.correlation.PearsonsCorrelation;
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 
+//Metrics.Stage resources only time their try block, so they are never referenced in it
+@SuppressWarnings("try")
 class CSVHandler {
     //program parameters
     private final double CORR_COEFF_CUTOFF = .6;
-    private final boolean REMOVE_OUTLIERS = false;
+    private final OutlierFilter.Policy OUTLIER_POLICY = OutlierFilter.Policy.NONE; //outlying training values to drop or clip before profiling
+    private final double OUTLIER_FENCE = 1.5, //IQR multiple for IQR and WINSORIZE
+                         OUTLIER_Z_SCORE = 3; //standard deviations from the mean for Z_SCORE
+    private final boolean EXPORT_CSV = true; //also write the processed files as CSV next to the binary ones
+    private final int PREPROCESSING_THREADS = 0; //per-column workers, 0 uses one per core and 1 runs sequentially
+    private final FeaturePruner.Policy PRUNING_POLICY = FeaturePruner.Policy.CONSTANT; //which processed columns to drop before training
+    private final double PRUNING_CUTOFF = .9; //|r| above which CORRELATED pruning drops one column of a pair
+    private final boolean STAGE_CACHE = true; //reuse the read, profile, encode and correlate stages of an identical earlier run
+    private final String CACHE_DIRECTORY = "Data/Cache/"; //default for cacheDirectory
+    private final long CACHE_LIMIT = 256L << 20; //bytes of cache entries kept, least recently used go first
     private boolean debugMode;
+    private final String cacheDirectory; //where processCSV keeps its stage cache, null runs every stage
 
-    CSVHandler(boolean debugMode){ this.debugMode = debugMode; }
-    CSVHandler() {this.debugMode = false;}
+    CSVHandler(boolean debugMode){ this(debugMode, null, true); }
+    CSVHandler() { this(false); }
+    CSVHandler(boolean debugMode, String cacheDirectory){ this(debugMode, cacheDirectory, false); }
 
+    private CSVHandler(boolean debugMode, String cacheDirectory, boolean defaultCache){
+        this.debugMode = debugMode;
+        this.cacheDirectory = defaultCache ? CACHE_DIRECTORY : cacheDirectory;
+    }
 
-    ArrayList<ArrayList<Double>> processCSV(String rawDirectory, String processedDirectory, String dependentVariable, boolean assumeStringsCategorical, ArrayList<String> otherCategoricalData, ArrayList<String> excludedData){
-        String[][] raw = readCSV(rawDirectory, true);
-        ArrayList<ArrayList<String>> normalizationFactors = new ArrayList<>();
 
-        System.out.println("Calculating Normalization factors... ");
-        calculateNormalizationFactors(normalizationFactors,
-                raw,
-                dependentVariable,
-                assumeStringsCategorical,
-                otherCategoricalData,
-                excludedData
-        );
-        System.out.println("Processing Data... ");
-        ArrayList<ArrayList<Double>> processedData = processData(true, normalizationFactors, raw, dependentVariable);
+    //every stage is looked up in the stage cache first (see StageCache), keyed from the file's content hash:
+    //  read: the file, profile: read + the field and outlier settings, encode: profile, correlate: encode + the cutoffs, policy and how the screen sums.
+    //the read stage is cached unfiltered and the outlier filter runs whenever the raw table is needed
+    //a stage is only recomputed when its key misses, and the raw file is only parsed when a stage still needs it
+    Dataset processCSV(String rawDirectory, String processedDirectory, String dependentVariable, boolean assumeStringsCategorical, ArrayList<String> otherCategoricalData, ArrayList<String> excludedData){
+        StageCache cache = new StageCache(String.valueOf(cacheDirectory), CACHE_LIMIT, STAGE_CACHE && cacheDirectory != null);
+        String readKey = null;
+        try {
+            readKey = cache.fileKey(rawDirectory);
+        } catch (IOException e) {
+            System.err.println("Error: could not hash " + rawDirectory + ", running without the stage cache");
+            System.err.println("Message: \n" + e.getMessage());
+        }
+        String profileKey = readKey == null ? null : StageCache.key("profile", readKey,
+                    dependentVariable, assumeStringsCategorical, otherCategoricalData, excludedData, OUTLIER_POLICY, OUTLIER_FENCE, OUTLIER_Z_SCORE),
+               encodeKey = profileKey == null ? null : StageCache.key("encode", profileKey),
+               correlateKey = encodeKey == null ? null : StageCache.key("correlate", encodeKey,
+                    CORR_COEFF_CUTOFF, PRUNING_POLICY, PRUNING_CUTOFF,
+                    //the screen's sums depend on the storage precision, the kernels and the blocking
+                    FeatureMatrix.FLOAT32_STORAGE, Kernels.INSTANCE.name(), CorrelationScreen.TILE, CorrelationScreen.ROW_BLOCK);
+
+        NormalizationFactors normalizationFactors = cache.get("profile", profileKey,
+                path -> NormalizationFactors.fromRows(BinaryColumnStore.readNormalizationFactors(path)));
+        Dataset processedData = normalizationFactors == null ? null : cache.get("encode", encodeKey, BinaryColumnStore::readDataset);
+        IncrementalState state = processedData == null ? null : cache.get("state", encodeKey, IncrementalState::read);
+
+        RawTable raw = null;
+        if(state == null){
+            raw = cache.get("read", readKey, RawTable::read);
+            if(raw == null){
+                try(Metrics.Stage stage = Metrics.stage("read")){
+                    raw = readColumns(rawDirectory);
+                }
+                cache.put("read", readKey, raw::write);
+            }
+            raw = filterOutliers(raw, continuousFields(raw, dependentVariable, assumeStringsCategorical, otherCategoricalData, excludedData), null);
+        }
+        if(normalizationFactors == null){
+            NormalizationFactors calculated = normalizationFactors = new NormalizationFactors();
+            System.out.println("Calculating Normalization factors... ");
+            try(Metrics.Stage stage = Metrics.stage("profile")){
+                calculateNormalizationFactors(normalizationFactors,
+                        raw,
+                        dependentVariable,
+                        assumeStringsCategorical,
+                        otherCategoricalData,
+                        excludedData
+                );
+            }
+            cache.put("profile", profileKey, path -> BinaryColumnStore.writeNormalizationFactors(path, calculated.toRows()));
+        }
+        if(processedData == null){
+            System.out.println("Processing Data... ");
+            Dataset encoded = processedData = processData(false, normalizationFactors, raw, dependentVariable);
+            cache.put("encode", encodeKey, path -> BinaryColumnStore.writeDataset(path, encoded));
+        }
+        if(state == null){
+            IncrementalState merged = state = new IncrementalState();
+            state.mergeProfiles(raw);
+            state.addSegment("processedData.bin", processedData.numRows(), normalizationFactors);
+            cache.put("state", encodeKey, merged::write);
+        }
 
-        ArrayList<String[]> toWrite = normalizationFactors.stream()
+        DependencyReport report = cache.get("correlate", correlateKey, DependencyReport::read);
+        if(report == null){
+            DependencyReport screened = report = findDependencies(processedData.getColumns(), new ArrayList<>(Arrays.asList(processedData.getNames())));
+            cache.put("correlate", correlateKey, screened::write);
+        }
+        System.out.print(report.text);
+        normalizationFactors.prune(report.pruned);
+
+        writeBinary(processedDirectory, normalizationFactors, processedData);
+        writeState(processedDirectory, state);
+        if(EXPORT_CSV) exportCSV(processedDirectory, normalizationFactors, processedData);
+        //every column is kept on disk, so appended data and a different policy can still use them
+        return normalizationFactors.project(processedData);
+    }
+
+    //folds new training rows into the processed data without touching the rows already processed.
+    //factors only widen: continuous bounds take in the new min/max and new category levels are appended,
+    //so existing codes and bits keep their meaning. the new rows become one more segment (see IncrementalState)
+    //and the returned dataset is every segment under the updated factors.
+    Dataset appendCSV(String rawDirectory, String processedDirectory, String dependentVariable){
+        IncrementalState state;
+        try {
+            state = IncrementalState.read(processedDirectory + "columnState.bin");
+        } catch (IOException e) {
+            System.out.println("No incremental state in " + processedDirectory + ", process the full training data first.");
+            System.out.println("Message: \n" + e.getMessage());
+            System.exit(1);
+            return null;
+        }
+        NormalizationFactors normalizationFactors = readNormalizationFactors(processedDirectory + "normalizationFactors.csv");
+        RawTable raw;
+        try(Metrics.Stage stage = Metrics.stage("read")){
+            raw = readColumns(rawDirectory);
+        }
+        HashSet<String> continuous = new HashSet<>();
+        for(FieldEncoder encoder : normalizationFactors)
+            if(encoder instanceof ContinuousEncoder) continuous.add(encoder.getName());
+        //fences over every row trained on so far and this batch, not the batch alone
+        RawTable batch = raw;
+        raw = filterOutliers(raw, continuous, name -> {
+            ColumnProfile merged = new ColumnProfile(), seen = state.getProfile(name);
+            if(seen != null) merged.merge(seen);
+            merged.merge(batch.getColumn(name).getProfile());
+            return merged;
+        });
+
+        System.out.println("Updating Normalization factors... ");
+        NormalizationFactors updated;
+        try(Metrics.Stage stage = Metrics.stage("profile")){
+            updated = updateNormalizationFactors(normalizationFactors, raw);
+        }
+        System.out.println("Processing " + raw.numRows() + " new rows... ");
+        Dataset appended = processData(false, updated, raw, dependentVariable);
+
+        String segment = state.nextSegmentFile();
+        state.mergeProfiles(raw);
+        state.addSegment(segment, appended.numRows(), updated);
+        try {
+            BinaryColumnStore.writeDataset(processedDirectory + segment, appended);
+            BinaryColumnStore.writeNormalizationFactors(processedDirectory + "normalizationFactors.bin", updated.toRows());
+        }catch (IOException e){
+            System.out.println("An error occured when attempting to write a binary file.");
+            System.out.println("Message: \n" + e.getMessage());
+            System.out.println("StackTrace:");
+            e.printStackTrace();
+        }
+        writeState(processedDirectory, state);
+        writeCSV(processedDirectory + "normalizationFactors.csv", updated.toRows().stream()
+                .map(x -> x.toArray(new String[0]))
+                .collect(Collectors.toCollection(ArrayList::new)));
+        return readProcessedData(processedDirectory);
+    }
+
+    //the factors widened to cover the new rows, unchanged encoders are reused as they are
+    NormalizationFactors updateNormalizationFactors(NormalizationFactors normalizationFactors, RawTable raw){
+        NormalizationFactors updated = new NormalizationFactors();
+        for(FieldEncoder encoder : normalizationFactors){
+            RawColumn column = raw.getColumn(encoder.getName());
+            if(column == null)
+                throw new IllegalArgumentException("New data has no field " + encoder.getName());
+            if(encoder instanceof CategoricalEncoder){
+                CategoricalEncoder categorical = (CategoricalEncoder)encoder;
+                ArrayList<String> levels = new ArrayList<>(Arrays.asList(categorical.getLevels()));
+                HashSet<String> known = new HashSet<>(levels);
+                String[] cells = column.hasDictionary() ? column.getLevels() : null;
+                int count = cells != null ? cells.length : column.numRows();
+                for(int i = 0; i<count; i++){
+                    String cell = cells != null ? cells[i] : column.getString(i);
+                    if(known.add(cell)) levels.add(cell);
+                }
+                if(levels.size() == categorical.numLevels()) updated.add(encoder);
+                else{
+                    if(debugMode) System.out.println(" Feild " + encoder.getName() + " gained " + (levels.size() - categorical.numLevels()) + " levels");
+                    updated.add(new CategoricalEncoder(encoder.getName(), levels));
+                }
+            }
+            else{
+                if(!column.isNumeric())
+                    throw new IllegalArgumentException("Field " + encoder.getName() + " was continuous but the new data has non-numeric values, reprocess the full training data");
+                ContinuousEncoder continuous = (ContinuousEncoder)encoder;
+                ColumnProfile profile = column.getProfile();
+                double minimum = Math.min(continuous.getMinimum(), profile.getMinimum()),
+                       maximum = Math.max(continuous.getMaximum(), profile.getMaximum());
+                if(minimum == continuous.getMinimum() && maximum == continuous.getMaximum()) updated.add(encoder);
+                else{
+                    if(debugMode) System.out.println(" Feild " + encoder.getName() + " widened to [" + minimum + ", " + maximum + "]");
+                    //the fill stays the mean the existing rows were filled with
+                    updated.add(new ContinuousEncoder(encoder.getName(), minimum, maximum, continuous.getFill()));
+                }
+            }
+        }
+        //columns pruned when the data was processed stay pruned, whatever the new rows hold
+        updated.prune(Arrays.asList(normalizationFactors.getPruned()));
+        return updated;
+    }
+
+    //names of the fields calculateNormalizationFactors will treat as continuous
+    private HashSet<String> continuousFields(RawTable raw, String dependentVariable, boolean assumeStringsCategorical, ArrayList<String> otherCategoricalData, ArrayList<String> excludedData){
+        HashSet<String> continuous = new HashSet<>();
+        for(RawColumn column : raw.getColumns()){
+            String name = column.getName();
+            if(!excludedData.contains(name) && !name.equals(dependentVariable) && !isCategorical(column, assumeStringsCategorical, otherCategoricalData))
+                continuous.add(name);
+        }
+        return continuous;
+    }
+
+    private boolean isCategorical(RawColumn column, boolean assumeStringsCategorical, ArrayList<String> otherCategoricalData){
+        return otherCategoricalData.contains(column.getName()) || (assumeStringsCategorical && !column.isNumeric());
+    }
+
+    //reference gives the profile each continuous field's fences come from, null for raw's own
+    private RawTable filterOutliers(RawTable raw, HashSet<String> continuous, Function<String, ColumnProfile> reference){
+        if(OUTLIER_POLICY == OutlierFilter.Policy.NONE) return raw;
+        double fence = OUTLIER_POLICY == OutlierFilter.Policy.Z_SCORE ? OUTLIER_Z_SCORE : OUTLIER_FENCE;
+        RawTable filtered;
+        try(Metrics.Stage stage = Metrics.stage("outliers")){
+            filtered = reference == null ? OutlierFilter.apply(raw, continuous, OUTLIER_POLICY, fence)
+                    : OutlierFilter.apply(raw, continuous, reference, OUTLIER_POLICY, fence);
+        }
+        if(OUTLIER_POLICY == OutlierFilter.Policy.WINSORIZE) System.out.println("Clipped the outliers of " + continuous.size() + " continuous fields (" + OUTLIER_POLICY + " " + fence + ")");
+        else System.out.println("Dropped " + (raw.numRows() - filtered.numRows()) + " of " + raw.numRows() + " rows as outliers (" + OUTLIER_POLICY + " " + fence + ")");
+        return filtered;
+    }
+
+    private void writeState(String processedDirectory, IncrementalState state){
+        try {
+            state.write(processedDirectory + "columnState.bin");
+        }catch (IOException e){
+            System.out.println("An error occured when attempting to write " + processedDirectory + "columnState.bin");
+            System.out.println("Message: \n" + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private void writeBinary(String processedDirectory, NormalizationFactors normalizationFactors, Dataset processedData){
+        try {
+            if(debugMode) System.out.println("Writing binary files in " + processedDirectory);
+            BinaryColumnStore.writeNormalizationFactors(processedDirectory + "normalizationFactors.bin", normalizationFactors.toRows());
+            BinaryColumnStore.writeDataset(processedDirectory + "processedData.bin", processedData);
+        }catch (IOException e){
+            System.out.println("An error occured when attempting to write a binary file.");
+            System.out.println("Message: \n" + e.getMessage());
+            System.out.println("StackTrace:");
+            e.printStackTrace();
+        }
+    }
+
+    private void exportCSV(String processedDirectory, NormalizationFactors normalizationFactors, Dataset processedData){
+        ArrayList<String[]> toWrite = normalizationFactors.toRows().stream()
                 .map(x -> x.toArray(new String[0]))
                 .collect(Collectors.toCollection(ArrayList::new));
 
         writeCSV(processedDirectory + "normalizationFactors.csv", toWrite);
 
         toWrite.clear();
-        for(ArrayList<Double> feild : processedData) {
-            String[] s = new String[feild.size()];
-            for (int j = 0; j<s.length; j++) {
-                s[j] = feild.get(j).toString();
-            }
-            toWrite.add(s);
-        }
+        for(double[] feild : processedData.getColumns())
+            toWrite.add(toStrings(feild));
+        if(processedData.hasTarget())
+            toWrite.add(toStrings(processedData.getTarget()));
 
         writeCSV(processedDirectory + "processedData.csv", toWrite);
-        return processedData;
     }
 
-    ArrayList<ArrayList<Double>> readProcessedCSV(String directory){
-        return Arrays.stream(readCSV(directory + "processedData.csv", true))
-                .map(x -> Arrays.stream(x)
-                        .map(Double::parseDouble)
-                        .collect(Collectors.toCollection(ArrayList::new)))
-                .collect(Collectors.toCollection(ArrayList::new));
+    //the processed training data without the pruned columns
+    Dataset readProcessedData(String directory){
+        return readNormalizationFactors(directory + "normalizationFactors.csv").project(readAllProcessedData(directory));
     }
 
-    private ArrayList<ArrayList<String>> readNormalizationFactors(String directory){
-        return Arrays.stream(readCSV(directory, false))
+    //every processed column, the pruned ones too. loads the binary processed data when present, otherwise parses the CSV export
+    Dataset readAllProcessedData(String directory){
+        if(new File(directory + "columnState.bin").exists()){
+            try {
+                IncrementalState state = IncrementalState.read(directory + "columnState.bin");
+                if(state.numSegments() > 1){
+                    System.out.println("Mapping " + state.numSegments() + " processed segments from " + directory + "... ");
+                    return state.load(directory, readNormalizationFactors(directory + "normalizationFactors.csv"));
+                }
+            } catch (IOException e) {
+                System.err.println("Error: could not load the processed segments in " + directory);
+                System.err.println("Message: \n" + e.getMessage());
+            }
+        }
+        if(new File(directory + "processedData.bin").exists()){
+            try {
+                System.out.println("Mapping processed data from " + directory + "processedData.bin... ");
+                return BinaryColumnStore.readDataset(directory + "processedData.bin");
+            } catch (IOException e) {
+                System.err.println("Error: could not map " + directory + "processedData.bin, falling back to CSV");
+                System.err.println("Message: \n" + e.getMessage());
+            }
+        }
+        return readProcessedCSV(directory);
+    }
+
+    Dataset readProcessedCSV(String directory){
+        String[][] raw = readCSV(directory + "processedData.csv");
+        double[][] columns = new double[raw.length-1][];
+        for(int i = 0; i<columns.length; i++)
+            columns[i] = toDoubles(raw[i]);
+        double[] target = toDoubles(raw[raw.length-1]);
+
+        String[] names = readNormalizationFactors(directory + "normalizationFactors.csv").featureNames();
+        if(names.length != columns.length){
+            if(debugMode) System.out.println("Normalization factors describe " + names.length + " fields but " + columns.length + " were read, using generic names");
+            names = new String[columns.length];
+            for(int i = 0; i<names.length; i++)
+                names[i] = "feature" + (i+1);
+        }
+        return new Dataset(names, columns, target);
+    }
+
+    //directory is the normalization factor CSV, the binary copy next to it is used when present
+    NormalizationFactors readNormalizationFactors(String directory){
+        String binary = directory.replaceAll("\\.csv$", ".bin");
+        if(!binary.equals(directory) && new File(binary).exists()){
+            try {
+                return NormalizationFactors.fromRows(BinaryColumnStore.readNormalizationFactors(binary));
+            } catch (IOException e) {
+                System.err.println("Error: could not map " + binary + ", falling back to CSV");
+                System.err.println("Message: \n" + e.getMessage());
+            }
+        }
+        return NormalizationFactors.fromRows(Arrays.stream(readCSV(directory))
                 .map(x -> Arrays.stream(x)
                         .collect(Collectors.toCollection(ArrayList::new)))
-                .collect(Collectors.toCollection(ArrayList::new));
+                .collect(Collectors.toCollection(ArrayList::new)));
     }
 
     void writeOutputCSV(String directory, String[][] data){
@@ -78,222 +371,188 @@ class CSVHandler {
         writeCSV(directory, toWrite);
     }
 
-    ArrayList<ArrayList<Double>> getTestingData(String testingDirectory, String processedDirectory, String dependentVariable){
-        String[][] rawData = readCSV(testingDirectory, true);
-        ArrayList<ArrayList<String>> normalizationFactors = readNormalizationFactors(processedDirectory + "normalizationFactors.csv");
-        ArrayList<Double> ids = Arrays.stream(rawData[0])
-                .skip(1)
-                .mapToDouble(Double::parseDouble)
-                .boxed()
-                .collect(Collectors.toCollection(ArrayList::new));
-        ArrayList<ArrayList<Double>> testingData = processData(false, normalizationFactors, rawData, dependentVariable);
-        testingData.add(0, ids);
-        return testingData;
-    }
-
-    private void calculateNormalizationFactors(ArrayList<ArrayList<String>> normalizationFactors, String[][] raw, String dependentVariable, boolean assumeStringsCategorical, ArrayList<String> otherCategoricalData, ArrayList<String> excludedData){
-        for(String[] feild : raw){
-            if(!excludedData.contains(feild[0]) && !feild[0].equals(dependentVariable)) {//ignore excluded data fields
-
-                //handle + detect categorical variables
-                if(otherCategoricalData.contains(feild[0]) ||
-                        (assumeStringsCategorical &&
-                             Arrays.stream(feild)
-                                  .skip(1)
-                                  .anyMatch(x -> !(x.matches("(-?\\d+(\\.\\d+)?)") || x.equals("NA")))
-                        )
-                ){
-                    if(debugMode) System.out.println(" Feild " + feild[0] + " was found to be categorical");
-                    ArrayList<String> curr = new ArrayList<>();
-                    curr.add("Categorical");
-                    curr.add(feild[0]);
-                    for (int j = 1; j < feild.length; j++) {
-                        if(!curr.contains(feild[j]))
-                            curr.add(feild[j]);
-                    }
-                    normalizationFactors.add(curr);
-                }
+    //the processed testing data before pruning, NormalizationFactors.project gives the columns the model uses
+    Dataset getAllTestingData(String testingDirectory, String processedDirectory, String dependentVariable){
+        RawTable rawData;
+        try(Metrics.Stage stage = Metrics.stage("read")){
+            rawData = readColumns(testingDirectory);
+        }
+        NormalizationFactors normalizationFactors = readNormalizationFactors(processedDirectory + "normalizationFactors.csv");
+        double[] ids = rawData.getColumn(0).getValues();
+        Dataset testingData = processData(false, normalizationFactors, rawData, dependentVariable);
+        return new Dataset(testingData.getNames(), testingData.getColumns(), testingData.getTarget(), ids);
+    }
 
-                else{
-                    if(debugMode) System.out.println(" Feild " + feild[0] + " was found to be continuous");
-                    ArrayList<String> curr = new ArrayList<>();
-                    curr.add("Continuous");
-                    curr.add(feild[0]);
-                    ArrayList<Double> currData = Arrays.stream(feild)
-                            .skip(1)
-                            .filter(x -> !x.equals("NA"))
-                            .map(Double::parseDouble)
-                            .collect(Collectors.toCollection(ArrayList::new));
-                    DescriptiveStatistics d = new DescriptiveStatistics(currData
-                            .stream()
-                            .mapToDouble(Double::doubleValue)
-                            .toArray());
-                    double lowerPercentile = d.getPercentile(25),
-                            upperPercentile = d.getPercentile(75),
-                            minimum = Double.MAX_VALUE,
-                            maximum = Double.MIN_VALUE;
-                    double IQR = upperPercentile - lowerPercentile;
-                    for (int j = 0; j < currData.size(); j++) {
-                        boolean remove = false;
-                        if(REMOVE_OUTLIERS &&
-                            ((currData.get(j)<lowerPercentile - 1.5 * IQR) ||
-                            (currData.get(j)>upperPercentile + 1.5 * IQR))){
-                            Scanner s = new Scanner(System.in);
-                            System.out.println("Element of field " + curr.get(1) + " with ID " + (j+1) + " was found to be an outlier.");
-                            System.out.println("Lower Percentile: " + lowerPercentile + " Upper Percentile: " + upperPercentile);
-                            System.out.println("Value: " + currData.get(j));
-                            System.out.println("Remove outlier? y/N");
-                            remove = s.nextLine().equals("y");
-                            if(remove) {
-                                currData.remove(currData.get(j));
-                                j++; //accounts for reindexing
-                            }
-                        }
-                        if(!remove){
-                            if(currData.get(j)<minimum) minimum = currData.get(j);
-                            if(currData.get(j)>maximum) maximum = currData.get(j);
-                        }
-                    }
-                    curr.add(minimum+"");
-                    curr.add(maximum+"");
-                    normalizationFactors.add(curr);
-                }
+    void calculateNormalizationFactors(NormalizationFactors normalizationFactors, RawTable raw, String dependentVariable, boolean assumeStringsCategorical, ArrayList<String> otherCategoricalData, ArrayList<String> excludedData){
+        RawColumn[] columns = raw.getColumns();
+        FieldEncoder[] encoders = new FieldEncoder[columns.length];
+        forEachColumn(columns.length, i -> {
+            String name = columns[i].getName();
+            if(!excludedData.contains(name) && !name.equals(dependentVariable)) //ignore excluded data fields
+                encoders[i] = calculateFactors(columns[i], isCategorical(columns[i], assumeStringsCategorical, otherCategoricalData));
+        });
+
+        //added in column order whatever order the workers finished in
+        for(int i = 0; i<columns.length; i++){
+            if(encoders[i] != null){
+                if(debugMode) System.out.println(" Feild " + columns[i].getName() + " was found to be " + (encoders[i] instanceof CategoricalEncoder ? "categorical" : "continuous"));
+                normalizationFactors.add(encoders[i]);
             }
-            else if(debugMode) System.out.println(" Feild " + feild[0] + " was skipped");
+            else if(debugMode) System.out.println(" Feild " + columns[i].getName() + " was skipped");
         }
-        if(debugMode) printDoubleList(normalizationFactors);
+        if(debugMode) printDoubleList(normalizationFactors.toRows());
     }
 
-    private ArrayList<ArrayList<Double>> processData(boolean findDependencies, ArrayList<ArrayList<String>> normalizationFactors, String[][] rawData, String dependentVariable){
-        ArrayList<String> currentFeilds = normalizationFactors.stream()
-                .map(x -> x.get(1))
-                .collect(Collectors.toCollection(ArrayList::new));
-        ArrayList<ArrayList<Double>> processedData = new ArrayList<>();
-        ArrayList<Double> dependentVariableData = new ArrayList<>(); //separated as it is not normalized or checked for dependency
-
-        ArrayList<ArrayList<String>> processedFeilds = new ArrayList<>(); //just for testing
-        processedFeilds.add(new ArrayList<>());
-        processedFeilds.add(new ArrayList<>());
-
-        for(String[] feild : rawData) {
-            if (currentFeilds.contains(feild[0])) {//ignore excluded data fields
-                if(debugMode) System.out.println("Processing Field " + feild[0]);
-
-                for(ArrayList<String> nF : normalizationFactors){
-                    if(feild[0].equals(nF.get(1))){
-                        if(nF.get(0).equals("Categorical")){
-                            if(debugMode) System.out.println(feild[0] + " was found to be categorical");
-                            ArrayList<ArrayList<Double>> dummies = new ArrayList<>();
-                            int numBits = (int)(Math.ceil(Math.log(nF.size()-2) / Math.log(2)));
-                            if(debugMode) System.out.println("Numbits: " + numBits + " for " + (nF.size()-2) + " categories");
-                            for(int i = 0; i<numBits; i++) {
-                                dummies.add(new ArrayList<>());
-                                processedFeilds.get(0).add(feild[0] + "_dummy"+(i+1));
-                                processedFeilds.get(1).add(processedFeilds.get(0).size()+"");
-                            }
-                            for(int i = 1; i<feild.length; i++){
-                                boolean found = false;
-                                for(int j = 2; j<nF.size(); j++){
-                                    if(feild[i].equals(nF.get(j))){
-                                        found = true;
-                                        char[] binary = Integer.toBinaryString(j-1).toCharArray();
-                                        for(int k = 0; k<numBits; k++){
-                                            if(k<binary.length)
-                                                dummies.get(k).add(Double.parseDouble(binary[binary.length-1-k]+""));
-                                            else
-                                                dummies.get(k).add(0.0);
-                                        }
-                                    }
-                                }
-                                if(!found) {
-                                    for (int k = 0; k < numBits; k++) {
-                                        dummies.get(k).add(0.0);
-                                    }
-                                }
-                            }
-                            processedData.addAll(dummies);
-                            if(debugMode) {
-                                System.out.println("Dummies: ");
-                                printDoubleDoubleList(dummies);
-                                System.out.println("From: ");
-                                printArray(feild);
-                                System.out.println("Based on: ");
-                                printList(nF);
-                            }
-                        }
-                        else{
-                            if(debugMode) System.out.println(feild[0] + " was found to be continuous");
-                            ArrayList<Double> normField = new ArrayList<>();
-                            double[] availableData = Arrays.stream(feild)
-                                    .skip(1)
-                                    .filter(x -> !x.equals("NA"))
-                                    .mapToDouble(Double::parseDouble)
-                                    .toArray();
-                            double mean = Arrays.stream(availableData).sum() / availableData.length;
-                            for(int i = 1; i<feild.length; i++){
-                                if(feild[i].equals("NA")){
-                                    feild[i] = mean+"";
-                                }
-                                normField.add((Double.parseDouble(feild[i])-Double.parseDouble(nF.get(2)))/
-                                        (Double.parseDouble(nF.get(3))-Double.parseDouble(nF.get(2))));
-                            }
-                            processedData.add(normField);
-                            processedFeilds.get(0).add(feild[0]);
-                            processedFeilds.get(1).add(processedFeilds.get(0).size()+"");
-                            if(debugMode) {
-                                System.out.println("Processed Data: ");
-                                printDList(normField);
-                                System.out.println(" from ");
-                                printArray(feild);
-                            }
-                        }
+    private FieldEncoder calculateFactors(RawColumn feild, boolean categorical){
+        String name = feild.getName();
+        //handle categorical variables
+        if(categorical){
+            if(feild.hasDictionary())
+                return new CategoricalEncoder(name, Arrays.asList(feild.getLevels()));
+            LinkedHashSet<String> levels = new LinkedHashSet<>();
+            for(int j = 0; j<feild.numRows(); j++)
+                levels.add(feild.getString(j));
+            return new CategoricalEncoder(name, new ArrayList<>(levels));
+        }
+
+        if(!feild.isNumeric())
+            throw new IllegalArgumentException("Field " + name + " is not numeric and was not marked categorical");
+        //outliers were already dropped or clipped by filterOutliers, so the profile covers exactly the training values
+        ColumnProfile profile = feild.getProfile();
+        return new ContinuousEncoder(name, profile.getMinimum(), profile.getMaximum(), profile.getMean());
+    }
+
+    Dataset processData(boolean findDependencies, NormalizationFactors normalizationFactors, RawTable rawData, String dependentVariable){
+        RawColumn[] columns = rawData.getColumns();
+        double[][][] encoded = new double[columns.length][][];
+        ArrayList<double[]> processedData = new ArrayList<>();
+        double[] dependentVariableData = null; //separated as it is not normalized or checked for dependency
+        ArrayList<String> processedFeilds = new ArrayList<>();
+        double[][] processedArray;
+        try(Metrics.Stage stage = Metrics.stage("encode")){
+            forEachColumn(columns.length, i -> {
+                FieldEncoder encoder = normalizationFactors.get(columns[i].getName());
+                if(encoder != null) encoded[i] = encoder.encode(columns[i]);
+            });
+
+            for(int c = 0; c<columns.length; c++) {
+                RawColumn feild = columns[c];
+                String name = feild.getName();
+                FieldEncoder encoder = normalizationFactors.get(name);
+                if (encoder != null) {//ignore excluded data fields
+                    if(debugMode) System.out.println("Processing Field " + name + " (" + encoder.getClass().getSimpleName() + ", " + encoder.width() + " columns)");
+                    for(int i = 0; i<encoded[c].length; i++){
+                        processedData.add(encoded[c][i]);
+                        processedFeilds.add(encoder.outputName(i));
+                    }
+                    if(debugMode) {
+                        System.out.println("Processed Data: ");
+                        printDoubleDoubleList(encoded[c]);
+                        System.out.println("Based on: ");
+                        printList(encoder.toFactors());
                     }
                 }
-            }
-            //converts dependent variable to list
-            else if(feild[0].equals(dependentVariable)){
-                if(debugMode) System.out.println("Processing dependent variable " + feild[0]);
-                    dependentVariableData = Arrays.stream(feild)
-                            .skip(1)
-                            .map(Double::parseDouble)
-                            .collect(Collectors.toCollection(ArrayList::new));
+                //the dependent variable is used as parsed
+                else if(name.equals(dependentVariable)){
+                    if(debugMode) System.out.println("Processing dependent variable " + name);
+                    if(!feild.isNumeric())
+                        throw new IllegalArgumentException("Dependent variable " + name + " contains non-numeric values");
+                    dependentVariableData = feild.getValues();
+                }
+                else{
+                    if(debugMode) System.out.println("Skipping Field " + name);
                 }
-            else{
-                if(debugMode) System.out.println("Skipping Field " + feild[0]);
             }
+            processedArray = processedData.toArray(new double[0][]);
         }
-
         if(findDependencies){
-            ArrayList<Integer> toRemove = new ArrayList<>();
-            double[][] processedArray = new double[processedData.size()][];
-            for(int i = 0; i<processedArray.length; i++){
-                processedArray[i] = processedData.get(i)
-                        .stream()
-                        .mapToDouble(Double::valueOf)
-                        .toArray();
+            DependencyReport report = findDependencies(processedArray, processedFeilds);
+            System.out.print(report.text);
+            normalizationFactors.prune(report.pruned);
+        }
+
+        return new Dataset(processedFeilds.toArray(new String[0]), processedArray, dependentVariableData);
+    }
+
+    //the correlation report and the columns PRUNING_POLICY drops, kept as text so a cached report prints the same
+    private DependencyReport findDependencies(double[][] processedArray, ArrayList<String> processedFeilds){
+        StringBuilder text = new StringBuilder("Feilds: \n").append(formatList(processedFeilds));
+        CorrelationScreen.Pairs pairs;
+        try(Metrics.Stage stage = Metrics.stage("correlate")){
+            pairs = CorrelationScreen.screen(processedArray, Math.min(CORR_COEFF_CUTOFF, PRUNING_CUTOFF));
+        }
+
+        for(int k = 0; k<pairs.size(); ){
+            int i = pairs.first[k];
+            ArrayList<String> correlations = new ArrayList<>();
+            for(; k<pairs.size() && pairs.first[k] == i; k++)
+                if(Math.abs(pairs.coefficients[k]) > CORR_COEFF_CUTOFF) correlations.add(processedFeilds.get(pairs.second[k]));
+            if(!correlations.isEmpty() && !processedFeilds.get(i).contains("dummy")) {
+                text.append("The field ").append(processedFeilds.get(i))
+                        .append(" was found to be highly correlated with the following fields:\n")
+                        .append(formatList(correlations));
             }
-            System.out.println("Feilds: ");
-            printDoubleList(processedFeilds);
-            PearsonsCorrelation pearsonsCorrelation = new PearsonsCorrelation();
-
-            for(int i = 0; i<processedData.size(); i++){
-                ArrayList<String> correlations = new ArrayList<>();
-                for(int j = i+1; j<processedData.size(); j++){
-                    double correlationCoefficient = Math.abs(pearsonsCorrelation.correlation(processedArray[i], processedArray[j]));
-                    if(correlationCoefficient>CORR_COEFF_CUTOFF){
-                        correlations.add(processedFeilds.get(0).get(j));
-                    }
-                }
-                if(!correlations.isEmpty() && !processedFeilds.get(0).get(i).contains("dummy")) {
-                    System.out.println("The field " + processedFeilds.get(0).get(i)
-                            + " was found to be highly correlated with the following fields:");
-                    printList(correlations);
-                }
+        }
+
+        ArrayList<String> pruned = FeaturePruner.prune(processedArray, processedFeilds.toArray(new String[0]), pairs, PRUNING_POLICY, PRUNING_CUTOFF);
+        if(!pruned.isEmpty()){
+            text.append("Pruned ").append(pruned.size()).append(" of ").append(processedArray.length)
+                    .append(" fields (").append(PRUNING_POLICY).append("): \n")
+                    .append(formatList(pruned));
+        }
+        return new DependencyReport(text.toString(), pruned);
+    }
+
+    private static class DependencyReport {
+        final String text;
+        final ArrayList<String> pruned;
+
+        DependencyReport(String text, ArrayList<String> pruned){
+            this.text = text;
+            this.pruned = pruned;
+        }
+
+        //int pruned, UTF per name, int length, UTF-8 text bytes
+        void write(String directory) throws IOException {
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(directory)))){
+                out.writeInt(pruned.size());
+                for(String name : pruned) out.writeUTF(name);
+                byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+
+        static DependencyReport read(String directory) throws IOException {
+            try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(directory)))){
+                int count = in.readInt();
+                ArrayList<String> pruned = new ArrayList<>(count);
+                for(int i = 0; i<count; i++) pruned.add(in.readUTF());
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return new DependencyReport(new String(bytes, StandardCharsets.UTF_8), pruned);
             }
         }
+    }
 
-        if(!dependentVariableData.isEmpty()) processedData.add(dependentVariableData);
-        return processedData;
+    //columns are independent, so they are fanned out over a fork-join pool and each result lands in its own slot
+    private void forEachColumn(int columns, IntConsumer action){
+        if(PREPROCESSING_THREADS == 1){
+            for(int i = 0; i<columns; i++) action.accept(i);
+            return;
+        }
+        ForkJoinPool pool = PREPROCESSING_THREADS == 0 ? ForkJoinPool.commonPool() : new ForkJoinPool(PREPROCESSING_THREADS);
+        try {
+            pool.submit(() -> IntStream.range(0, columns).parallel().forEach(action)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while preprocessing", e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            if(pool != ForkJoinPool.commonPool()) pool.shutdown();
+        }
     }
 
     private void writeCSV(String directory, ArrayList<String[]> toWrite){
@@ -319,16 +578,14 @@ class CSVHandler {
         }
     }
 
-    private String[][] readCSV(String directory, boolean transpose){
+    String[][] readCSV(String directory){
         ArrayList<String[]> temp = new ArrayList<>();
         try {
             CSVReader reader = new CSVReader(new FileReader(directory));
             System.out.println("Reading raw data from " + directory + "... ");
-            int column = 0;
             String[] curr;
             while ((curr = reader.readNext()) != null) {
                 temp.add(curr);
-                column++;
             }
         }
         catch (FileNotFoundException e){
@@ -342,13 +599,45 @@ class CSVHandler {
             System.exit(1);
         }
 
-        String[][] raw = new String[temp.size()][];
-        for(int i = 0; i < temp.size(); i++){
-            raw[i] = temp.get(i);
+        return temp.toArray(new String[0][]);
+    }
+
+    //streams a CSV with a header row straight into per-column builders, the file is never held as strings
+    RawTable readColumns(String directory){
+        ArrayList<ColumnBuilder> builders = new ArrayList<>();
+        try (CSVStreamReader reader = new CSVStreamReader(directory)) {
+            System.out.println("Reading raw data from " + directory + "... ");
+            ArrayList<String> cells = new ArrayList<>();
+            if(reader.readRow(cells)) {
+                for (String name : cells)
+                    builders.add(new ColumnBuilder(name));
+            }
+            //the only per-row cost is what the builders keep, so the heap decides how many rows fit
+            long rowLimit = Runtime.getRuntime().maxMemory() / (2L * ColumnBuilder.bytesPerRow() * Math.max(1, builders.size()));
+            if(debugMode) System.out.println("Room for about " + rowLimit + " rows of " + builders.size() + " columns");
+            while (reader.readRow(cells)) {
+                if(cells.size() != builders.size())
+                    throw new IOException("Row " + reader.getRowNumber() + " has " + cells.size() + " cells, expected " + builders.size());
+                if(reader.getRowNumber() > rowLimit)
+                    throw new IOException("Row " + reader.getRowNumber() + " exceeds the " + rowLimit + " rows the heap can hold, raise -Xmx");
+                for (int i = 0; i < cells.size(); i++)
+                    builders.get(i).add(cells.get(i));
+            }
+        }
+        catch (FileNotFoundException e){
+            System.err.println("Error: CSV File not found");
+            e.printStackTrace();
+            System.exit(1);
+        }
+        catch (IOException e){
+            System.err.println("Error: IOException Caught while streaming " + directory);
+            e.printStackTrace();
+            System.exit(1);
         }
 
-        if(transpose) raw = transpose2dArray(raw);
-        return raw;
+        return new RawTable(builders.stream()
+                .map(ColumnBuilder::build)
+                .toArray(RawColumn[]::new));
     }
 
     private void printMatrix(RealMatrix m){
@@ -362,15 +651,15 @@ class CSVHandler {
         }
     }
 
-    private void printDoubleDoubleList(ArrayList<ArrayList<Double>> list){
-        for(ArrayList<Double> arr : list){
+    private void printDoubleDoubleList(double[][] list){
+        for(double[] arr : list){
             System.out.print("Column: ");
             printDList(arr);
         }
     }
 
-    private void printDList(ArrayList<Double> list){
-        for(Double d : list)
+    private void printDList(double[] list){
+        for(double d : list)
             System.out.print(d + " ");
         System.out.print("\n");
     }
@@ -382,10 +671,15 @@ class CSVHandler {
     }
 
     private void printList(ArrayList<String> list){
+        System.out.print(formatList(list));
+    }
+
+    private static String formatList(ArrayList<String> list){
+        StringBuilder line = new StringBuilder();
         for(String s : list){
-            System.out.printf("%-21s", " " + s + " ");
+            line.append(String.format("%-21s", " " + s + " "));
         }
-        System.out.print("\n");
+        return line.append("\n").toString();
     }
 
     private void printReadFile(String[][] raw){
@@ -402,6 +696,20 @@ class CSVHandler {
         System.out.println();
     }
 
+    private static String[] toStrings(double[] array){
+        String[] s = new String[array.length];
+        for(int i = 0; i<s.length; i++)
+            s[i] = array[i] + "";
+        return s;
+    }
+
+    private static double[] toDoubles(String[] array){
+        double[] d = new double[array.length];
+        for(int i = 0; i<d.length; i++)
+            d[i] = Double.parseDouble(array[i]);
+        return d;
+    }
+
     private static String[][] transpose2dArray(String[][] array){
         int m = array.length;
         int n = array[0].length;
@@ -0,0 +1,44 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+
+//writes every record as one CSV line:
+//  kind,name,run,lambda,iteration,nanos,allocatedBytes,loss,gradientNorm,nonZeroWeights
+//fields a record does not have are left empty
+class CSVMetricsSink implements MetricsSink {
+    private final BufferedWriter writer;
+
+    CSVMetricsSink(String directory) throws IOException {
+        writer = new BufferedWriter(new FileWriter(directory));
+        writer.write("kind,name,run,lambda,iteration,nanos,allocatedBytes,loss,gradientNorm,nonZeroWeights");
+        writer.newLine();
+    }
+
+    @Override
+    public synchronized void stage(String stage, long nanos, long allocatedBytes){
+        write("stage," + stage + ",,,," + nanos + "," + (allocatedBytes < 0 ? "" : allocatedBytes + "") + ",,,");
+    }
+
+    @Override
+    public synchronized void iteration(int run, String trainer, double lambda, int iteration, double loss, double gradientNorm, long nanos, int nonZeroWeights){
+        write("iteration," + trainer + "," + run + "," + lambda + "," + iteration + "," + nanos + ",," + loss + "," + gradientNorm + "," + nonZeroWeights);
+    }
+
+    @Override
+    public synchronized void close(){
+        try {
+            writer.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void write(String line){
+        try {
+            writer.write(line);
+            writer.newLine();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+//row-at-a-time CSV parser over its own char buffer.
+//handles quoted cells (with "" escapes and embedded line breaks) and \n or \r\n line endings.
+class CSVStreamReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder cell = new StringBuilder();
+    private int position, limit;
+    private long rowNumber;
+
+    CSVStreamReader(Reader reader){ this.reader = reader; }
+
+    CSVStreamReader(String directory) throws IOException {
+        this(new InputStreamReader(new FileInputStream(directory), StandardCharsets.UTF_8));
+    }
+
+    //number of rows returned so far, the header included
+    long getRowNumber(){ return rowNumber; }
+
+    //reads the next record into cells (which is cleared first), returns false at the end of the file
+    boolean readRow(ArrayList<String> cells) throws IOException {
+        cells.clear();
+        int c = next();
+        while(c == '\n' || c == '\r') c = next(); //skip blank lines
+        if(c == -1) return false;
+
+        while(true){
+            cell.setLength(0);
+            if(c == '"'){
+                while(true){
+                    c = next();
+                    if(c == -1)
+                        throw new IOException("Unterminated quoted cell on row " + (rowNumber+1));
+                    if(c == '"'){
+                        if(peek() != '"') break;
+                        c = next();
+                    }
+                    cell.append((char)c);
+                }
+                c = next();
+            }
+            //unquoted cell, or anything trailing a closing quote
+            while(c != ',' && c != '\n' && c != '\r' && c != -1){
+                cell.append((char)c);
+                c = next();
+            }
+            cells.add(cell.toString());
+
+            if(c == ','){
+                c = next();
+                continue;
+            }
+            if(c == '\r' && peek() == '\n') next();
+            rowNumber++;
+            return true;
+        }
+    }
+
+    private int next() throws IOException {
+        if(position == limit && !fill()) return -1;
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if(position == limit && !fill()) return -1;
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int read = reader.read(buffer, 0, buffer.length);
+        if(read <= 0) return false;
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException { reader.close(); }
+}
@@ -0,0 +1,79 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+//binary dummy encoding over a hashed level dictionary.
+//level i (in order of first appearance) gets code i+1 and code 0 is the unknown bucket, so a field
+//with k levels needs bitLength(k) dummies and an unseen level encodes as all zeros without colliding.
+class CategoricalEncoder extends FieldEncoder {
+    static final int UNKNOWN = 0;
+
+    private final String[] levels;
+    private final HashMap<String, Integer> codes;
+    private final int numBits;
+
+    CategoricalEncoder(String name, List<String> levels){
+        super(name);
+        this.levels = levels.toArray(new String[0]);
+        this.codes = new HashMap<>(levels.size() * 2);
+        for(int i = 0; i<this.levels.length; i++)
+            codes.put(this.levels[i], i + 1);
+        this.numBits = 32 - Integer.numberOfLeadingZeros(this.levels.length);
+    }
+
+    int numLevels(){ return levels.length; }
+
+    String[] getLevels(){ return levels; }
+
+    int code(String level){
+        Integer code = codes.get(level);
+        return code == null ? UNKNOWN : code;
+    }
+
+    @Override
+    int width(){ return numBits; }
+
+    @Override
+    String outputName(int i){ return getName() + "_dummy" + (i+1); }
+
+    //bit k of the code
+    static double bit(int code, int k){ return (code >>> k) & 1; }
+
+    @Override
+    double[][] encode(RawColumn column){
+        int rows = column.numRows();
+        int[] rowCodes = new int[rows];
+        if(column.hasDictionary()){
+            //look every distinct raw level up once, then rows are an array lookup
+            String[] rawLevels = column.getLevels();
+            int[] translation = new int[rawLevels.length];
+            for(int i = 0; i<rawLevels.length; i++)
+                translation[i] = code(rawLevels[i]);
+            int[] rawCodes = column.getCodes();
+            for(int r = 0; r<rows; r++)
+                rowCodes[r] = translation[rawCodes[r]];
+        }
+        else{
+            for(int r = 0; r<rows; r++)
+                rowCodes[r] = code(column.getString(r));
+        }
+
+        double[][] dummies = new double[numBits][rows];
+        for(int r = 0; r<rows; r++){
+            int code = rowCodes[r];
+            for(int k = 0; k<numBits; k++)
+                dummies[k][r] = bit(code, k);
+        }
+        return dummies;
+    }
+
+    @Override
+    ArrayList<String> toFactors(){
+        ArrayList<String> nF = new ArrayList<>();
+        nF.add("Categorical");
+        nF.add(getName());
+        for(String level : levels)
+            nF.add(level);
+        return nF;
+    }
+}
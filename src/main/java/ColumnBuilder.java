@@ -0,0 +1,98 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+//accumulates one CSV column while it is streamed in.
+//cells are kept both as doubles (while every cell is numeric or NA) and as dictionary codes
+//(while the number of distinct values is small), whichever stops applying is dropped.
+//the column's profile is gathered in the same pass.
+class ColumnBuilder {
+    static final int MAX_DICTIONARY_SIZE = 1 << 16;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final String name;
+    private double[] values = new double[INITIAL_CAPACITY];
+    private int[] codes = new int[INITIAL_CAPACITY];
+    private HashMap<String, Integer> dictionary = new HashMap<>();
+    private ArrayList<String> levels = new ArrayList<>();
+    private final ColumnProfile profile = new ColumnProfile();
+    private int size;
+
+    ColumnBuilder(String name){ this.name = name; }
+
+    //bytes held per row while both representations are alive
+    static int bytesPerRow(){ return Double.BYTES + Integer.BYTES; }
+
+    void add(String cell){
+        if(size == capacity()) grow();
+
+        if(values != null){
+            double value;
+            if(cell.equals("NA")){
+                values[size] = Double.NaN;
+                profile.addNA();
+            }
+            else if(!Double.isNaN(value = NumberScanner.parse(cell))){
+                values[size] = value;
+                profile.addValue(value);
+            }
+            else{
+                if(levels == null) rebuildDictionary();
+                values = null;
+                profile.addOther();
+            }
+        }
+        else profile.addOther();
+
+        if(levels != null){
+            Integer code = dictionary.get(cell);
+            if(code == null){
+                code = levels.size();
+                dictionary.put(cell, code);
+                levels.add(cell);
+            }
+            codes[size] = code;
+            if(values != null && levels.size() > MAX_DICTIONARY_SIZE){
+                //high cardinality numeric column, the doubles are enough
+                dictionary = null;
+                levels = null;
+                codes = null;
+            }
+        }
+        size++;
+    }
+
+    RawColumn build(){
+        return new RawColumn(name,
+                values == null ? null : Arrays.copyOf(values, size),
+                codes == null ? null : Arrays.copyOf(codes, size),
+                levels == null ? null : levels.toArray(new String[0]),
+                size,
+                profile);
+    }
+
+    private int capacity(){ return values != null ? values.length : codes.length; }
+
+    private void grow(){
+        int capacity = capacity() * 2;
+        if(values != null) values = Arrays.copyOf(values, capacity);
+        if(codes != null) codes = Arrays.copyOf(codes, capacity);
+    }
+
+    //a non-numeric cell turned up after the dictionary was dropped, recover it from the parsed values
+    private void rebuildDictionary(){
+        dictionary = new HashMap<>();
+        levels = new ArrayList<>();
+        codes = new int[values.length];
+        for(int i = 0; i<size; i++){
+            String cell = RawColumn.format(values[i]);
+            Integer code = dictionary.get(cell);
+            if(code == null){
+                code = levels.size();
+                dictionary.put(cell, code);
+                levels.add(cell);
+            }
+            codes[i] = code;
+        }
+    }
+}
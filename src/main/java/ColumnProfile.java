@@ -0,0 +1,98 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+//statistics of one raw column, gathered in the same pass that ingests it.
+//numeric statistics only cover the numeric, non-NA cells.
+//profiles merge and serialize, so statistics over appended rows never need the old rows again.
+//the variance is kept as the sum of squared deviations from the mean, updated per value (Welford)
+//and per merge (Chan et al.), which stays accurate where a plain sum of squares would cancel
+class ColumnProfile {
+    private boolean numeric = true;
+    private long count, naCount;
+    private double minimum = Double.POSITIVE_INFINITY, maximum = Double.NEGATIVE_INFINITY, sum, squares;
+    private QuantileSketch sketch = new QuantileSketch();
+
+    //folds another column's profile into this one, as if its cells had been added here
+    void merge(ColumnProfile other){
+        numeric &= other.numeric;
+        count += other.count;
+        naCount += other.naCount;
+        minimum = Math.min(minimum, other.minimum);
+        maximum = Math.max(maximum, other.maximum);
+        long n = sketch.getCount(), m = other.sketch.getCount();
+        if(n > 0 && m > 0){
+            double delta = other.sum / m - sum / n;
+            squares += delta * delta * ((double)n * m / (n + m));
+        }
+        squares += other.squares;
+        sum += other.sum;
+        sketch.merge(other.sketch);
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeBoolean(numeric);
+        out.writeLong(count);
+        out.writeLong(naCount);
+        out.writeDouble(minimum);
+        out.writeDouble(maximum);
+        out.writeDouble(sum);
+        out.writeDouble(squares);
+        sketch.write(out);
+    }
+
+    static ColumnProfile read(DataInputStream in) throws IOException {
+        ColumnProfile profile = new ColumnProfile();
+        profile.numeric = in.readBoolean();
+        profile.count = in.readLong();
+        profile.naCount = in.readLong();
+        profile.minimum = in.readDouble();
+        profile.maximum = in.readDouble();
+        profile.sum = in.readDouble();
+        profile.squares = in.readDouble();
+        profile.sketch = QuantileSketch.read(in);
+        return profile;
+    }
+
+    void addNA(){
+        count++;
+        naCount++;
+    }
+
+    void addValue(double value){
+        count++;
+        if(value < minimum) minimum = value;
+        if(value > maximum) maximum = value;
+        long n = sketch.getCount();
+        double delta = n == 0 ? 0 : value - sum / n;
+        sum += value;
+        sketch.add(value);
+        squares += delta * (value - sum / (n + 1));
+    }
+
+    void addOther(){
+        count++;
+        numeric = false;
+    }
+
+    //true when every cell was a number or NA
+    boolean isNumeric(){ return numeric; }
+
+    long getCount(){ return count; }
+
+    long getNACount(){ return naCount; }
+
+    long getValueCount(){ return sketch.getCount(); }
+
+    double getMinimum(){ return minimum; }
+
+    double getMaximum(){ return maximum; }
+
+    double getMean(){ return sum / sketch.getCount(); }
+
+    //sample variance, NaN with fewer than two values
+    double getVariance(){ return sketch.getCount() < 2 ? Double.NaN : squares / (sketch.getCount() - 1); }
+
+    //approximate quantile of the numeric cells, q from 0 to 1
+    double getQuantile(double q){ return sketch.quantile(q); }
+}
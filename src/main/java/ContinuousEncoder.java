@@ -0,0 +1,53 @@
+import java.util.ArrayList;
+
+//min-max scaling. NA cells take the training mean (fill), or the mean of the column
+//being encoded for factors written before the fill was recorded.
+//a field whose training values are all the same (min == max) encodes as 0, which CONSTANT pruning drops
+class ContinuousEncoder extends FieldEncoder {
+    private final double minimum, maximum, fill;
+
+    ContinuousEncoder(String name, double minimum, double maximum, double fill){
+        super(name);
+        this.minimum = minimum;
+        this.maximum = maximum;
+        this.fill = fill;
+    }
+
+    double getMinimum(){ return minimum; }
+
+    double getMaximum(){ return maximum; }
+
+    //NaN when unknown
+    double getFill(){ return fill; }
+
+    @Override
+    int width(){ return 1; }
+
+    @Override
+    String outputName(int i){ return getName(); }
+
+    @Override
+    double[][] encode(RawColumn column){
+        if(!column.isNumeric())
+            throw new IllegalArgumentException("Field " + getName() + " is continuous but contains non-numeric values");
+        double[] values = column.getValues();
+        double mean = Double.isNaN(fill) ? column.getProfile().getMean() : fill, range = maximum - minimum;
+        double[] normField = new double[values.length];
+        for(int i = 0; i<values.length; i++){
+            double value = Double.isNaN(values[i]) ? mean : values[i];
+            normField[i] = range == 0 ? 0 : (value - minimum) / range;
+        }
+        return new double[][]{normField};
+    }
+
+    @Override
+    ArrayList<String> toFactors(){
+        ArrayList<String> nF = new ArrayList<>();
+        nF.add("Continuous");
+        nF.add(getName());
+        nF.add(minimum+"");
+        nF.add(maximum+"");
+        if(!Double.isNaN(fill)) nF.add(fill+"");
+        return nF;
+    }
+}
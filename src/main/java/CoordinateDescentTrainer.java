@@ -0,0 +1,233 @@
+import java.util.Arrays;
+
+//cyclic coordinate descent LASSO, same objective as FusedLassoTrainer:
+//  (1/n)*||y - Xw - b||^2 + lambda*||w||_1
+//each coordinate is solved exactly, w_j = S(x_j'(r + x_j*w_j), n*lambda/2) / x_j'x_j, and the bias is refit after every sweep.
+//
+//after a full sweep only the active (non-zero) coordinates are cycled until they settle, then one more
+//full sweep checks whether any zero coefficient wants to enter. convergence is the largest coefficient
+//change of a full sweep relative to the largest coefficient.
+//
+//residual mode keeps r = y - Xw - b and touches a column per coordinate visit.
+//covariance mode keeps g_j = x_j'r for every j instead, updated through cached x_j'x_k columns,
+//so after a column is cached its visits cost O(p) and never read X again.
+//X is read through FeatureMatrix, so sparse dummy columns only cost their non-zeros.
+//
+//metrics: covariance mode gets the objective and gradient from g and cached sums in O(p) every sweep.
+//residual mode needs a pass over X for the gradient, so it records every RECORD_INTERVAL sweeps and the last one.
+class CoordinateDescentTrainer implements LassoTrainer {
+    static final int RECORD_INTERVAL = 10;
+
+    private final FeatureMatrix columns;
+    private final double[] y;
+    private final int rows, features;
+    private final boolean covarianceUpdates;
+
+    private final double[] squaredNorms, columnSums;
+    private final double targetSum;
+    private double targetSquares;
+    private double[] targetCorrelations; //x_j'y, covariance mode only, filled the first time metrics are recorded
+
+    private final double[] weights, residual, gradient;
+    private final double[][] covariance; //covariance[k][j] = x_j'x_k, filled when k first moves
+    private final int[] active;
+    private double bias;
+
+    CoordinateDescentTrainer(Dataset data, boolean covarianceUpdates){
+        this(data.getFeatures(), LassoTrainer.target(data), covarianceUpdates);
+    }
+
+    //trains on a row view, target[r] belonging to row r of columns
+    CoordinateDescentTrainer(FeatureMatrix columns, double[] target, boolean covarianceUpdates){
+        if(target.length != columns.numRows())
+            throw new IllegalArgumentException("Target has " + target.length + " rows, expected " + columns.numRows());
+        this.columns = columns;
+        this.y = target;
+        this.rows = columns.numRows();
+        this.features = columns.numColumns();
+        this.covarianceUpdates = covarianceUpdates;
+
+        squaredNorms = new double[features];
+        columnSums = new double[features];
+        for(int c = 0; c<features; c++){
+            squaredNorms[c] = columns.squaredNorm(c);
+            columnSums[c] = columns.sum(c);
+        }
+        double sum = 0;
+        for(double d : y) sum += d;
+        targetSum = sum;
+
+        weights = new double[features];
+        residual = new double[rows];
+        gradient = covarianceUpdates ? new double[features] : null;
+        covariance = covarianceUpdates ? new double[features][] : null;
+        active = new int[features];
+    }
+
+    @Override
+    public LassoModel train(double lambda, double[] initialWeights, double initialBias, int maxIterations, double tolerance){
+        System.arraycopy(initialWeights, 0, weights, 0, features);
+        bias = initialBias;
+        computeResidual();
+        if(covarianceUpdates){
+            for(int c = 0; c<features; c++)
+                gradient[c] = columns.dot(c, residual);
+        }
+
+        double threshold = rows * lambda / 2;
+        MetricsSink sink = Metrics.sink();
+        int run = sink == null ? 0 : Metrics.nextRun();
+        boolean fullSweep = true;
+        int activeCount = 0, sweeps = 0, recorded = 0;
+        long nanos = 0;
+        while(sweeps < maxIterations){
+            sweeps++;
+            long start = sink == null ? 0 : System.nanoTime();
+            double maxChange = 0, maxWeight = 0;
+            int count = fullSweep ? features : activeCount;
+            for(int i = 0; i<count; i++){
+                int j = fullSweep ? i : active[i];
+                maxChange = Math.max(maxChange, updateCoordinate(j, threshold));
+            }
+            updateBias();
+            if(sink != null){
+                nanos = System.nanoTime() - start;
+                if(covarianceUpdates || sweeps % RECORD_INTERVAL == 0){
+                    record(sink, run, lambda, sweeps, nanos);
+                    recorded = sweeps;
+                }
+            }
+
+            for(int c = 0; c<features; c++)
+                maxWeight = Math.max(maxWeight, Math.abs(weights[c]));
+            boolean settled = maxChange <= tolerance * Math.max(1, maxWeight);
+            if(fullSweep){
+                if(settled) break;
+                activeCount = 0;
+                for(int c = 0; c<features; c++)
+                    if(weights[c] != 0) active[activeCount++] = c;
+                fullSweep = false;
+            }
+            else if(settled || activeCount == 0) fullSweep = true;
+        }
+
+        if(sink != null && recorded != sweeps) record(sink, run, lambda, sweeps, nanos);
+
+        if(covarianceUpdates) computeResidual();
+        double percentageError = 0;
+        for(int r = 0; r<rows; r++)
+            percentageError += Math.abs(residual[r] / y[r]);
+        return new LassoModel(lambda, Arrays.copyOf(weights, features), bias, percentageError / rows, sweeps);
+    }
+
+    //solves coordinate j exactly, returns the size of the change
+    private double updateCoordinate(int j, double threshold){
+        double norm = squaredNorms[j];
+        if(norm == 0){
+            //a constant zero column never helps
+            if(weights[j] == 0) return 0;
+            double change = Math.abs(weights[j]);
+            weights[j] = 0;
+            return change;
+        }
+        double old = weights[j];
+        double correlation = covarianceUpdates ? gradient[j] : columns.dot(j, residual);
+        double updated = FusedLassoTrainer.softThreshold(correlation + norm * old, threshold) / norm;
+        double delta = updated - old;
+        if(delta == 0) return 0;
+        weights[j] = updated;
+
+        if(covarianceUpdates){
+            double[] cached = covariance[j];
+            if(cached == null){
+                cached = new double[features];
+                for(int k = 0; k<features; k++)
+                    cached[k] = columns.dot(k, j);
+                covariance[j] = cached;
+            }
+            for(int k = 0; k<features; k++)
+                gradient[k] -= cached[k] * delta;
+        }
+        else{
+            columns.addScaled(j, -delta, residual);
+        }
+        return Math.abs(delta);
+    }
+
+    //the unpenalized bias is the mean of y - Xw
+    private void updateBias(){
+        double residualSum;
+        if(covarianceUpdates){
+            double fitted = 0;
+            for(int c = 0; c<features; c++)
+                fitted += columnSums[c] * weights[c];
+            residualSum = targetSum - fitted - rows * bias;
+        }
+        else{
+            residualSum = 0;
+            for(int r = 0; r<rows; r++)
+                residualSum += residual[r];
+        }
+        double delta = residualSum / rows;
+        if(delta == 0) return;
+        bias += delta;
+        if(covarianceUpdates){
+            for(int c = 0; c<features; c++)
+                gradient[c] -= columnSums[c] * delta;
+        }
+        else{
+            for(int r = 0; r<rows; r++)
+                residual[r] -= delta;
+        }
+    }
+
+    //objective and gradient norm of one sweep
+    private void record(MetricsSink sink, int run, double lambda, int sweep, long nanos){
+        double squaredError, residualSum, l1 = 0, squaredGradient = 0;
+        int nonZero = 0;
+        for(int c = 0; c<features; c++){
+            l1 += Math.abs(weights[c]);
+            if(weights[c] != 0) nonZero++;
+        }
+        if(covarianceUpdates){
+            //r'r = r'y - w'X'r - b*1'r, with r'y = y'y - w'X'y - b*1'y, so X is never read
+            if(targetCorrelations == null){
+                targetCorrelations = new double[features];
+                for(int c = 0; c<features; c++)
+                    targetCorrelations[c] = columns.dot(c, y);
+                for(double d : y) targetSquares += d * d;
+            }
+            double fitted = 0, correlation = 0, explained = 0;
+            for(int c = 0; c<features; c++){
+                fitted += columnSums[c] * weights[c];
+                correlation += targetCorrelations[c] * weights[c];
+                explained += gradient[c] * weights[c];
+                squaredGradient += gradient[c] * gradient[c];
+            }
+            residualSum = targetSum - fitted - rows * bias;
+            squaredError = targetSquares - correlation - bias * targetSum - explained - bias * residualSum;
+        }
+        else{
+            squaredError = 0;
+            residualSum = 0;
+            for(int r = 0; r<rows; r++){
+                squaredError += residual[r] * residual[r];
+                residualSum += residual[r];
+            }
+            for(int c = 0; c<features; c++){
+                double g = columns.dot(c, residual);
+                squaredGradient += g * g;
+            }
+        }
+        squaredGradient += residualSum * residualSum;
+        sink.iteration(run, covarianceUpdates ? "covariance coordinate descent" : "coordinate descent", lambda, sweep,
+                squaredError / rows + lambda * l1, 2 * Math.sqrt(squaredGradient) / rows, nanos, nonZero);
+    }
+
+    private void computeResidual(){
+        for(int r = 0; r<rows; r++)
+            residual[r] = y[r] - bias;
+        for(int c = 0; c<features; c++)
+            if(weights[c] != 0) columns.addScaled(c, -weights[c], residual);
+    }
+}
@@ -0,0 +1,146 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+//finds every pair of columns whose absolute Pearson correlation is above a cutoff.
+//each column is standardized once (zero mean, unit norm) so a correlation is a plain dot product,
+//then Z'Z is computed tile by tile in parallel and only the pairs over the cutoff are kept.
+//no p x p matrix is ever built, a task only holds one TILE x TILE block of sums.
+//with FeatureMatrix.FLOAT32_STORAGE the standardized columns are floats, summed in float within a row block
+//and in double across blocks.
+class CorrelationScreen {
+    static final int TILE = 32, ROW_BLOCK = 2048;
+
+    private CorrelationScreen(){}
+
+    //pairs (first < second) in ascending order of first, then second
+    static class Pairs {
+        final int[] first, second;
+        final double[] coefficients;
+
+        Pairs(int[] first, int[] second, double[] coefficients){
+            this.first = first;
+            this.second = second;
+            this.coefficients = coefficients;
+        }
+
+        int size(){ return first.length; }
+    }
+
+    static Pairs screen(double[][] columns, double cutoff){
+        int p = columns.length;
+        boolean float32 = FeatureMatrix.FLOAT32_STORAGE;
+        double[][] standardized = float32 ? null : new double[p][];
+        float[][] standardizedFloats = float32 ? new float[p][] : null;
+        IntStream.range(0, p).parallel().forEach(c -> {
+            double[] z = standardize(columns[c]);
+            if(!float32) standardized[c] = z;
+            else if(z != null) standardizedFloats[c] = toFloats(z);
+        });
+
+        List<double[]> found = tiles(p).parallelStream()
+                .map(t -> screenTile(standardized, standardizedFloats, p, columns.length > 0 ? columns[0].length : 0,
+                        t[0], t[1], cutoff))
+                .collect(Collectors.toList());
+
+        int size = 0;
+        for(double[] f : found) size += f.length / 3;
+        long[] keys = new long[size];
+        double[] values = new double[size];
+        int k = 0;
+        for(double[] f : found){
+            for(int i = 0; i<f.length; i += 3, k++){
+                keys[k] = ((long)f[i] << 32) | (long)f[i+1];
+                values[k] = f[i+2];
+            }
+        }
+        Integer[] order = new Integer[size];
+        for(int i = 0; i<size; i++) order[i] = i;
+        Arrays.sort(order, (x, y) -> Long.compare(keys[x], keys[y]));
+
+        int[] first = new int[size], second = new int[size];
+        double[] coefficients = new double[size];
+        for(int i = 0; i<size; i++){
+            first[i] = (int)(keys[order[i]] >>> 32);
+            second[i] = (int)keys[order[i]];
+            coefficients[i] = values[order[i]];
+        }
+        return new Pairs(first, second, coefficients);
+    }
+
+    //first columns {a, b} of every tile of the upper triangle of a p x p product
+    static List<int[]> tiles(int p){
+        List<int[]> tiles = new ArrayList<>();
+        for(int a = 0; a<p; a += TILE)
+            for(int b = a; b<p; b += TILE)
+                tiles.add(new int[]{a, b});
+        return tiles;
+    }
+
+    //z_i.z_j for i in [a, a+TILE) and j in [b, b+TILE), j > i (j >= i with diagonal), in sums[i-a][j-b].
+    //rows are taken ROW_BLOCK at a time so the tile's columns stay in cache while every pair is summed.
+    //exactly one of z and zf holds the columns, null columns are skipped
+    static double[][] tile(double[][] z, float[][] zf, int p, int rows, int a, int b, boolean diagonal){
+        Kernels kernels = Kernels.INSTANCE;
+        int aEnd = Math.min(a + TILE, p), bEnd = Math.min(b + TILE, p);
+        double[][] sums = new double[aEnd - a][bEnd - b];
+        for(int start = 0; start<rows; start += ROW_BLOCK){
+            int end = Math.min(start + ROW_BLOCK, rows);
+            for(int i = a; i<aEnd; i++){
+                if(z != null ? z[i] == null : zf[i] == null) continue;
+                double[] row = sums[i - a];
+                for(int j = Math.max(b, diagonal ? i : i + 1); j<bEnd; j++){
+                    if(z != null ? z[j] == null : zf[j] == null) continue;
+                    row[j - b] += z != null ? kernels.dot(z[i], z[j], start, end) : kernels.dot(zf[i], zf[j], start, end);
+                }
+            }
+        }
+        return sums;
+    }
+
+    //returns (i, j, r) triples flattened, for columns i in [a, a+TILE) and j in [b, b+TILE), i < j.
+    //exactly one of z and zf holds the standardized columns
+    private static double[] screenTile(double[][] z, float[][] zf, int p, int rows, int a, int b, double cutoff){
+        int aEnd = Math.min(a + TILE, p), bEnd = Math.min(b + TILE, p);
+        double[][] sums = tile(z, zf, p, rows, a, b, false);
+
+        double[] out = new double[0];
+        int size = 0;
+        for(int i = a; i<aEnd; i++){
+            for(int j = Math.max(b, i + 1); j<bEnd; j++){
+                double r = sums[i - a][j - b];
+                if(Math.abs(r) > cutoff){
+                    if(size + 3 > out.length) out = Arrays.copyOf(out, Math.max(24, out.length * 2));
+                    out[size++] = i;
+                    out[size++] = j;
+                    out[size++] = r;
+                }
+            }
+        }
+        return Arrays.copyOf(out, size);
+    }
+
+    private static float[] toFloats(double[] z){
+        float[] floats = new float[z.length];
+        for(int r = 0; r<z.length; r++)
+            floats[r] = (float)z[r];
+        return floats;
+    }
+
+    //(x - mean) / ||x - mean||, or null for a constant column (its correlation is undefined)
+    private static double[] standardize(double[] column){
+        double mean = 0;
+        for(double d : column) mean += d;
+        mean /= column.length;
+        double squares = 0;
+        for(double d : column) squares += (d - mean) * (d - mean);
+        if(squares == 0) return null;
+        double scale = 1 / Math.sqrt(squares);
+        double[] z = new double[column.length];
+        for(int r = 0; r<z.length; r++)
+            z[r] = (column[r] - mean) * scale;
+        return z;
+    }
+}
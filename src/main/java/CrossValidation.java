@@ -0,0 +1,153 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+//k-fold cross-validation with the folds trained concurrently on a fork-join pool.
+//rows are shuffled once and dealt into k folds. every fold trains on a FeatureMatrix row view of the
+//other k-1 folds and is scored on a view of its own rows, so the processed columns are shared
+//read-only and only row indices (and the target) are per fold.
+class CrossValidation {
+    private final Dataset data;
+    private final TrainingEngine engine;
+    private final double learningRate, tolerance;
+    private final int maxIterations;
+    private final ForkJoinPool pool;
+
+    CrossValidation(Dataset data, TrainingEngine engine, double learningRate, int maxIterations, double tolerance, ForkJoinPool pool){
+        LassoTrainer.target(data);
+        this.data = data;
+        this.engine = engine;
+        this.learningRate = learningRate;
+        this.maxIterations = maxIterations;
+        this.tolerance = tolerance;
+        this.pool = pool;
+    }
+
+    CrossValidation(Dataset data, TrainingEngine engine, double learningRate, int maxIterations, double tolerance){
+        this(data, engine, learningRate, maxIterations, tolerance, ForkJoinPool.commonPool());
+    }
+
+    //the fit of one fold and its errors on the rows it did not see
+    static class Fold {
+        final LassoModel model;
+        final int heldOutRows;
+        final double meanAbsolutePercentageError, rootMeanSquaredError;
+
+        Fold(LassoModel model, int heldOutRows, double meanAbsolutePercentageError, double rootMeanSquaredError){
+            this.model = model;
+            this.heldOutRows = heldOutRows;
+            this.meanAbsolutePercentageError = meanAbsolutePercentageError;
+            this.rootMeanSquaredError = rootMeanSquaredError;
+        }
+    }
+
+    //folds[i] holds out the i-th slice of the rows as shuffled by seed
+    Fold[] run(int k, double lambda, double[] initialWeights, double initialBias, long seed){
+        int rows = data.numRows();
+        if(k < 2 || k > rows)
+            throw new IllegalArgumentException("Cannot split " + rows + " rows into " + k + " folds");
+        int[] order = new int[rows];
+        for(int i = 0; i<rows; i++) order[i] = i;
+        Random random = new Random(seed);
+        for(int i = rows - 1; i>0; i--){
+            int j = random.nextInt(i + 1), swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        int[] assignment = new int[rows];
+        for(int i = 0; i<rows; i++)
+            assignment[order[i]] = i % k;
+
+        Fold[] folds = new Fold[k];
+        pool.invoke(new Folds(assignment, lambda, initialWeights, initialBias, folds, 0, k));
+        return folds;
+    }
+
+    //row-weighted mean of the folds' held-out MAPE
+    static double meanAbsolutePercentageError(Fold[] folds){
+        double sum = 0;
+        int rows = 0;
+        for(Fold fold : folds){
+            sum += fold.meanAbsolutePercentageError * fold.heldOutRows;
+            rows += fold.heldOutRows;
+        }
+        return sum / rows;
+    }
+
+    //RMSE over every held-out row
+    static double rootMeanSquaredError(Fold[] folds){
+        double sum = 0;
+        int rows = 0;
+        for(Fold fold : folds){
+            sum += fold.rootMeanSquaredError * fold.rootMeanSquaredError * fold.heldOutRows;
+            rows += fold.heldOutRows;
+        }
+        return Math.sqrt(sum / rows);
+    }
+
+    private Fold fit(int[] assignment, int fold, double lambda, double[] initialWeights, double initialBias){
+        int heldOut = 0;
+        for(int a : assignment)
+            if(a == fold) heldOut++;
+        int[] trainRows = new int[assignment.length - heldOut], testRows = new int[heldOut];
+        for(int r = 0, i = 0, j = 0; r<assignment.length; r++){
+            if(assignment[r] == fold) testRows[j++] = r;
+            else trainRows[i++] = r;
+        }
+
+        FeatureMatrix features = data.getFeatures();
+        double[] target = data.getTarget();
+        LassoModel model = engine.create(features.rows(trainRows), select(target, trainRows), learningRate)
+                .train(lambda, initialWeights, initialBias, maxIterations, tolerance);
+
+        double[] predicted = new double[heldOut];
+        Arrays.fill(predicted, model.getBias());
+        features.rows(testRows).multiplyAdd(model.getWeights(), predicted);
+        double percentageError = 0, squaredError = 0;
+        for(int i = 0; i<heldOut; i++){
+            double y = target[testRows[i]], residual = y - predicted[i];
+            percentageError += Math.abs(residual / y);
+            squaredError += residual * residual;
+        }
+        return new Fold(model, heldOut, percentageError / heldOut, Math.sqrt(squaredError / heldOut));
+    }
+
+    static double[] select(double[] values, int[] rows){
+        double[] selected = new double[rows.length];
+        for(int i = 0; i<rows.length; i++)
+            selected[i] = values[rows[i]];
+        return selected;
+    }
+
+    private class Folds extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] assignment;
+        private final double lambda, initialBias;
+        private final double[] initialWeights;
+        private final Fold[] folds;
+        private final int from, to;
+
+        Folds(int[] assignment, double lambda, double[] initialWeights, double initialBias, Fold[] folds, int from, int to){
+            this.assignment = assignment;
+            this.lambda = lambda;
+            this.initialWeights = initialWeights;
+            this.initialBias = initialBias;
+            this.folds = folds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute(){
+            if(to - from > 1){
+                int middle = (from + to) >>> 1;
+                invokeAll(new Folds(assignment, lambda, initialWeights, initialBias, folds, from, middle),
+                        new Folds(assignment, lambda, initialWeights, initialBias, folds, middle, to));
+                return;
+            }
+            folds[from] = fit(assignment, from, lambda, initialWeights, initialBias);
+        }
+    }
+}
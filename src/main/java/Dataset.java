@@ -0,0 +1,80 @@
+//primitive, column-major container for processed data.
+//columns[i] holds every row of feature i, so the training code can use it as X transposed without copying.
+//the target (dependent variable) and row ids are optional and kept apart from the features.
+//once the FeatureMatrix is built it is the only copy of the columns it stores sparsely or as floats, so memory
+//follows the non-zeros, and getColumn/getColumns rebuild those columns dense for the code that wants them that way
+//(float columns come back at float precision, the precision every fit on them already saw).
+class Dataset {
+    private final String[] names;
+    private double[][] columns; //null entries are held only by features
+    private final double[] target;
+    private final double[] ids;
+    private final int rows;
+    private FeatureMatrix features;
+
+    Dataset(String[] names, double[][] columns, double[] target, double[] ids){
+        if(names.length != columns.length)
+            throw new IllegalArgumentException("Expected " + columns.length + " column names but got " + names.length);
+        int rows = columns.length > 0 ? columns[0].length : target != null ? target.length : ids != null ? ids.length : 0;
+        for(int i = 0; i<columns.length; i++){
+            if(columns[i].length != rows)
+                throw new IllegalArgumentException("Column " + names[i] + " has " + columns[i].length + " rows, expected " + rows);
+        }
+        if(target != null && target.length != rows)
+            throw new IllegalArgumentException("Target has " + target.length + " rows, expected " + rows);
+        if(ids != null && ids.length != rows)
+            throw new IllegalArgumentException("Ids have " + ids.length + " rows, expected " + rows);
+        this.names = names;
+        this.columns = columns;
+        this.target = target;
+        this.ids = ids;
+        this.rows = rows;
+    }
+
+    Dataset(String[] names, double[][] columns, double[] target){ this(names, columns, target, null); }
+
+    int numRows(){ return rows; }
+
+    int numColumns(){ return columns.length; }
+
+    String getName(int column){ return names[column]; }
+
+    String[] getNames(){ return names; }
+
+    //the backing array, or a dense copy for a column only the FeatureMatrix holds
+    synchronized double[] getColumn(int column){
+        return columns[column] != null ? columns[column] : features.column(column);
+    }
+
+    //backing arrays, not a copy, except for the columns only the FeatureMatrix holds
+    synchronized double[][] getColumns(){
+        double[][] dense = columns;
+        for(int c = 0; c<columns.length; c++){
+            if(columns[c] == null){
+                if(dense == columns) dense = columns.clone();
+                dense[c] = features.column(c);
+            }
+        }
+        return dense;
+    }
+
+    //the columns in the hybrid sparse/dense layout the training kernels use, built on first request.
+    //the double arrays of the columns it stores sparsely or as floats are let go one by one while it is built
+    //(the outer array is copied first, it may be shared)
+    synchronized FeatureMatrix getFeatures(){
+        if(features == null){
+            double[][] kept = columns.clone();
+            features = FeatureMatrix.of(kept, rows, FeatureMatrix.FLOAT32_STORAGE);
+            columns = kept;
+        }
+        return features;
+    }
+
+    boolean hasTarget(){ return target != null; }
+
+    double[] getTarget(){ return target; }
+
+    boolean hasIds(){ return ids != null; }
+
+    double[] getIds(){ return ids; }
+}
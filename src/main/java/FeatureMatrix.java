@@ -0,0 +1,274 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+//hybrid column storage for the training kernels.
+//0/1 dummy columns that are mostly zero keep only the sorted rows where they are 1, every other
+//column stays a dense double[]. kernels over a sparse column touch its ones and nothing else:
+//  X_c.v   sums v over the ones
+//  v += aX_c adds a at the ones
+//so a sweep over X costs the number of non-zeros rather than rows x columns.
+//rows(selected) gives a view over some of the rows that shares the dense arrays instead of copying them.
+//the matrix is the only copy of its sparse and float columns (see Dataset.getFeatures), column(c) rebuilds one dense.
+//
+//with FLOAT32_STORAGE the dense columns are held as float[] (processed values are in [0, 1], so nothing
+//is lost that the fit can see), halving the bytes every sweep reads and held. residuals, gradients and weights stay double,
+//and on the housing data the trained weights match the double path to within 1e-7 of the largest weight.
+//full-matrix loops go through Kernels, which uses the Vector API when the JVM has it.
+class FeatureMatrix {
+    static final boolean FLOAT32_STORAGE = false;
+
+    private final int rows;
+    private final double[][] dense; //null where the column is sparse or float
+    private final float[][] floats; //null where the column is sparse or double
+    private final int[][] ones;     //null where the column is dense, positions within this view
+    private final int[] rowIndex;   //row of the dense arrays behind each row of this view, null for all of them
+    private final Kernels kernels = Kernels.INSTANCE;
+    private double[][] gram;
+
+    private FeatureMatrix(int rows, double[][] dense, float[][] floats, int[][] ones, int[] rowIndex){
+        this.rows = rows;
+        this.dense = dense;
+        this.floats = floats;
+        this.ones = ones;
+        this.rowIndex = rowIndex;
+    }
+
+    //every entry of columns the matrix stores in its own form (sparse or float) is set to null as soon as it is
+    //converted, so with no other reference the double column can be collected before the next one is built
+    static FeatureMatrix of(double[][] columns, int rows, boolean float32){
+        int features = columns.length;
+        double[][] dense = new double[features][];
+        float[][] floats = new float[features][];
+        int[][] ones = new int[features][];
+        for(int c = 0; c<features; c++){
+            double[] column = columns[c];
+            int[] set = setRows(column);
+            //a row index costs half a double, so only columns under half full shrink
+            if(set != null && set.length * 2 <= rows) ones[c] = set;
+            else if(float32) floats[c] = toFloats(column);
+            else{
+                dense[c] = column;
+                continue;
+            }
+            columns[c] = null;
+        }
+        return new FeatureMatrix(rows, dense, floats, ones, null);
+    }
+
+    //view of the given rows (ascending) of this matrix.
+    //dense columns are shared, sparse columns get their ones renumbered, which costs their non-zeros
+    FeatureMatrix rows(int[] selected){
+        int[] position = new int[rows];
+        Arrays.fill(position, -1);
+        for(int i = 0; i<selected.length; i++)
+            position[selected[i]] = i;
+        int[][] viewOnes = new int[ones.length][];
+        for(int c = 0; c<ones.length; c++){
+            if(ones[c] == null) continue;
+            int[] set = new int[ones[c].length];
+            int k = 0;
+            for(int r : ones[c])
+                if(position[r] >= 0) set[k++] = position[r];
+            viewOnes[c] = Arrays.copyOf(set, k);
+        }
+        int[] index = new int[selected.length];
+        for(int i = 0; i<selected.length; i++)
+            index[i] = rowIndex == null ? selected[i] : rowIndex[selected[i]];
+        return new FeatureMatrix(selected.length, dense, floats, viewOnes, index);
+    }
+
+    int numRows(){ return rows; }
+
+    int numColumns(){ return dense.length; }
+
+    boolean isSparse(int column){ return ones[column] != null; }
+
+    //column c as a double[], the shared array when it is stored as one, otherwise built from its ones or floats
+    double[] column(int c){
+        if(rowIndex == null && dense[c] != null) return dense[c];
+        double[] column = new double[rows];
+        if(ones[c] != null){
+            for(int r : ones[c]) column[r] = 1;
+        }
+        else for(int r = 0; r<rows; r++) column[r] = value(c, r);
+        return column;
+    }
+
+    int nonZeros(int column){
+        if(ones[column] != null) return ones[column].length;
+        int count = 0;
+        for(int r = 0; r<rows; r++)
+            if(value(column, r) != 0) count++;
+        return count;
+    }
+
+    //X_c.v
+    double dot(int column, double[] v){
+        double sum = 0;
+        int[] set = ones[column];
+        if(set != null){
+            for(int r : set)
+                sum += v[r];
+        }
+        else if(rowIndex == null){
+            if(dense[column] != null) sum = kernels.dot(dense[column], v, 0, rows);
+            else sum = kernels.dot(floats[column], v, rows);
+        }
+        else if(dense[column] != null){
+            double[] x = dense[column];
+            for(int r = 0; r<rows; r++)
+                sum += x[rowIndex[r]] * v[r];
+        }
+        else{
+            float[] x = floats[column];
+            for(int r = 0; r<rows; r++)
+                sum += x[rowIndex[r]] * v[r];
+        }
+        return sum;
+    }
+
+    //X_a.X_b
+    double dot(int a, int b){
+        if(ones[a] != null && ones[b] != null){
+            //both sparse: count the rows they share
+            int[] x = ones[a], y = ones[b];
+            int count = 0;
+            for(int i = 0, j = 0; i<x.length && j<y.length; ){
+                if(x[i] < y[j]) i++;
+                else if(x[i] > y[j]) j++;
+                else{
+                    count++;
+                    i++;
+                    j++;
+                }
+            }
+            return count;
+        }
+        if(ones[a] != null || ones[b] != null){
+            //one sparse: sum the dense one over the other's ones
+            int sparse = ones[a] != null ? a : b, other = sparse == a ? b : a;
+            double sum = 0;
+            for(int r : ones[sparse]) sum += value(other, r);
+            return sum;
+        }
+        if(rowIndex == null){
+            if(dense[a] != null && dense[b] != null) return kernels.dot(dense[a], dense[b], 0, rows);
+            if(floats[a] != null && floats[b] != null) return kernels.dot(floats[a], floats[b], 0, rows);
+            return dense[a] != null ? kernels.dot(floats[b], dense[a], rows) : kernels.dot(floats[a], dense[b], rows);
+        }
+        double sum = 0;
+        for(int r = 0; r<rows; r++)
+            sum += value(a, r) * value(b, r);
+        return sum;
+    }
+
+    //X'X, built on first request and shared by every trainer on this matrix (read-only).
+    //pairs of columns stored as arrays are summed tile by tile in parallel with CorrelationScreen's blocked kernel,
+    //pairs with a sparse column go through dot(a, b), which only visits the ones. a row view has no contiguous
+    //arrays to block over, so all of its pairs go through dot(a, b)
+    synchronized double[][] gram(){
+        if(gram == null){
+            int p = numColumns();
+            double[][] g = new double[p][p];
+            boolean tiled = rowIndex == null;
+            int[] stored = IntStream.range(0, p).filter(c -> tiled && ones[c] == null).toArray();
+            int n = stored.length;
+            //of() stores every non-sparse column the same way, so one of these holds them all
+            boolean float32 = n > 0 && dense[stored[0]] == null;
+            double[][] z = float32 ? null : new double[n][];
+            float[][] zf = float32 ? new float[n][] : null;
+            for(int i = 0; i<n; i++){
+                if(float32) zf[i] = floats[stored[i]];
+                else z[i] = dense[stored[i]];
+            }
+            CorrelationScreen.tiles(n).parallelStream().forEach(t -> {
+                double[][] sums = CorrelationScreen.tile(z, zf, n, rows, t[0], t[1], true);
+                for(int i = t[0]; i<Math.min(t[0] + CorrelationScreen.TILE, n); i++)
+                    for(int j = Math.max(t[1], i); j<Math.min(t[1] + CorrelationScreen.TILE, n); j++)
+                        g[stored[i]][stored[j]] = sums[i - t[0]][j - t[1]];
+            });
+            IntStream.range(0, p).parallel().forEach(a -> {
+                for(int b = a; b<p; b++)
+                    if(!tiled || ones[a] != null || ones[b] != null) g[a][b] = dot(a, b);
+            });
+            for(int a = 0; a<p; a++)
+                for(int b = 0; b<a; b++)
+                    g[a][b] = g[b][a];
+            gram = g;
+        }
+        return gram;
+    }
+
+    //v += scale * X_c
+    void addScaled(int column, double scale, double[] v){
+        int[] set = ones[column];
+        if(set != null){
+            for(int r : set)
+                v[r] += scale;
+        }
+        else if(rowIndex == null){
+            if(dense[column] != null) kernels.addScaled(scale, dense[column], v, rows);
+            else kernels.addScaled(scale, floats[column], v, rows);
+        }
+        else if(dense[column] != null){
+            double[] x = dense[column];
+            for(int r = 0; r<rows; r++)
+                v[r] += scale * x[rowIndex[r]];
+        }
+        else{
+            float[] x = floats[column];
+            for(int r = 0; r<rows; r++)
+                v[r] += scale * x[rowIndex[r]];
+        }
+    }
+
+    //v += X*weights, skipping zero weights
+    void multiplyAdd(double[] weights, double[] v){
+        for(int c = 0; c<weights.length; c++)
+            if(weights[c] != 0) addScaled(c, weights[c], v);
+    }
+
+    double sum(int column){
+        if(ones[column] != null) return ones[column].length;
+        double sum = 0;
+        for(int r = 0; r<rows; r++) sum += value(column, r);
+        return sum;
+    }
+
+    double squaredNorm(int column){
+        if(ones[column] != null) return ones[column].length;
+        double sum = 0;
+        for(int r = 0; r<rows; r++){
+            double x = value(column, r);
+            sum += x * x;
+        }
+        return sum;
+    }
+
+    //row r of a dense column, for the loops that run once per fit
+    private double value(int column, int r){
+        int row = rowIndex == null ? r : rowIndex[r];
+        return dense[column] != null ? dense[column][row] : floats[column][row];
+    }
+
+    private static float[] toFloats(double[] column){
+        float[] floats = new float[column.length];
+        for(int r = 0; r<column.length; r++)
+            floats[r] = (float)column[r];
+        return floats;
+    }
+
+    //sorted rows holding 1, or null if the column has anything other than 0 and 1
+    private static int[] setRows(double[] column){
+        int count = 0;
+        for(double d : column){
+            if(d == 1) count++;
+            else if(d != 0) return null;
+        }
+        int[] set = new int[count];
+        int k = 0;
+        for(int r = 0; r<column.length; r++)
+            if(column[r] == 1) set[k++] = r;
+        return set;
+    }
+}
@@ -0,0 +1,42 @@
+import java.util.ArrayList;
+
+//picks processed columns that cannot help the fit, so they never reach X.
+//  NONE        keeps everything
+//  CONSTANT    drops zero-variance columns, such as dummy bits no training row sets or all-NaN columns
+//  CORRELATED  also drops the later column of every pair whose |r| is above the cutoff, unless one of the pair is already gone
+class FeaturePruner {
+    enum Policy { NONE, CONSTANT, CORRELATED }
+
+    private FeaturePruner(){}
+
+    //names of the columns to drop, in column order. pairs come from CorrelationScreen and may use a lower cutoff
+    static ArrayList<String> prune(double[][] columns, String[] names, CorrelationScreen.Pairs pairs, Policy policy, double cutoff){
+        boolean[] dropped = new boolean[columns.length];
+        if(policy != Policy.NONE){
+            for(int c = 0; c<columns.length; c++)
+                dropped[c] = isConstant(columns[c]);
+        }
+        if(policy == Policy.CORRELATED && pairs != null){
+            for(int k = 0; k<pairs.size(); k++){
+                int i = pairs.first[k], j = pairs.second[k];
+                if(Math.abs(pairs.coefficients[k]) > cutoff && !dropped[i] && !dropped[j])
+                    dropped[j] = true;
+            }
+        }
+        ArrayList<String> pruned = new ArrayList<>();
+        for(int c = 0; c<columns.length; c++)
+            if(dropped[c]) pruned.add(names[c]);
+        return pruned;
+    }
+
+    //NaN cells carry no information, so an all-NaN column (a continuous field with no values, only NA) is constant too
+    private static boolean isConstant(double[] column){
+        double first = Double.NaN;
+        for(double d : column){
+            if(Double.isNaN(d)) continue;
+            if(Double.isNaN(first)) first = d;
+            else if(d != first) return false;
+        }
+        return true;
+    }
+}
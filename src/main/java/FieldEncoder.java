@@ -0,0 +1,28 @@
+import java.util.ArrayList;
+
+//turns one raw field into one or more processed columns.
+//toFactors/fromFactors convert to and from a normalizationFactors.csv row: type, name, parameters...
+abstract class FieldEncoder {
+    private final String name;
+
+    FieldEncoder(String name){ this.name = name; }
+
+    String getName(){ return name; }
+
+    //number of processed columns this field becomes
+    abstract int width();
+
+    abstract String outputName(int i);
+
+    //returns width() columns with one value per row
+    abstract double[][] encode(RawColumn column);
+
+    abstract ArrayList<String> toFactors();
+
+    static FieldEncoder fromFactors(ArrayList<String> nF){
+        if(nF.get(0).equals("Categorical"))
+            return new CategoricalEncoder(nF.get(1), nF.subList(2, nF.size()));
+        return new ContinuousEncoder(nF.get(1), Double.parseDouble(nF.get(2)), Double.parseDouble(nF.get(3)),
+                nF.size() > 4 ? Double.parseDouble(nF.get(4)) : Double.NaN);
+    }
+}
@@ -0,0 +1,102 @@
+import java.util.Arrays;
+
+//proximal gradient LASSO over the column-major dataset.
+//minimizes (1/n)*||y - Xw - b||^2 + lambda*||w||_1 with two passes over X per iteration:
+//  1. residual r = y - Xw - b, accumulated column by column, then MAPE and sum(r) in the same row loop
+//  2. per column g = X_c.r, gradient step and soft threshold fused into one update
+//both passes go through FeatureMatrix, so sparse dummy columns only cost their non-zeros.
+//every buffer is allocated up front, so iterations allocate nothing.
+class FusedLassoTrainer implements LassoTrainer {
+    private final FeatureMatrix columns;
+    private final double[] y;
+    private final int rows, features;
+    private final double learningRate;
+
+    private final double[] weights, residual;
+    private double bias, objective, gradientNorm;
+
+    FusedLassoTrainer(Dataset data, double learningRate){
+        this(data.getFeatures(), LassoTrainer.target(data), learningRate);
+    }
+
+    //trains on a row view, target[r] belonging to row r of columns
+    FusedLassoTrainer(FeatureMatrix columns, double[] target, double learningRate){
+        if(target.length != columns.numRows())
+            throw new IllegalArgumentException("Target has " + target.length + " rows, expected " + columns.numRows());
+        this.columns = columns;
+        this.y = target;
+        this.rows = columns.numRows();
+        this.features = columns.numColumns();
+        this.learningRate = learningRate;
+        this.weights = new double[features];
+        this.residual = new double[rows];
+    }
+
+    //runs up to maxIterations steps, stopping once the objective changes by less than tolerance (relative)
+    @Override
+    public LassoModel train(double lambda, double[] initialWeights, double initialBias, int maxIterations, double tolerance){
+        System.arraycopy(initialWeights, 0, weights, 0, features);
+        bias = initialBias;
+        double meanPercentageError = 0, previousObjective = Double.POSITIVE_INFINITY;
+        MetricsSink sink = Metrics.sink();
+        int run = sink == null ? 0 : Metrics.nextRun();
+        int j = 0;
+        while(j < maxIterations){
+            long start = sink == null ? 0 : System.nanoTime();
+            meanPercentageError = step(lambda);
+            j++;
+            if(sink != null)
+                sink.iteration(run, "fused", lambda, j, objective, gradientNorm, System.nanoTime() - start, nonZeroWeights());
+            if(meanPercentageError>100) break;
+            if(Math.abs(previousObjective - objective) <= tolerance * Math.max(1, objective)) break;
+            previousObjective = objective;
+        }
+        return new LassoModel(lambda, Arrays.copyOf(weights, features), bias, meanPercentageError, j);
+    }
+
+    //one proximal gradient step, returns the MAPE of the weights it started from
+    //and leaves their LASSO objective in objective and its smooth part's gradient norm in gradientNorm
+    private double step(double lambda){
+        //pass 1: residuals
+        Arrays.fill(residual, -bias);
+        for(int c = 0; c<features; c++)
+            if(weights[c] != 0) columns.addScaled(c, -weights[c], residual);
+        double percentageError = 0, residualSum = 0, squaredError = 0, l1 = 0;
+        for(int r = 0; r<rows; r++){
+            double res = residual[r] + y[r];
+            residual[r] = res;
+            residualSum += res;
+            squaredError += res * res;
+            percentageError += Math.abs(res / y[r]);
+        }
+        for(int c = 0; c<features; c++)
+            l1 += Math.abs(weights[c]);
+        objective = squaredError / rows + lambda * l1;
+
+        //pass 2: gradient X'r and the soft threshold step
+        double scale = 2 * learningRate / rows,
+               threshold = learningRate * lambda;
+        double squaredGradient = residualSum * residualSum;
+        for(int c = 0; c<features; c++){
+            double dot = columns.dot(c, residual);
+            squaredGradient += dot * dot;
+            weights[c] = softThreshold(weights[c] + scale * dot, threshold);
+        }
+        bias += scale * residualSum;
+        gradientNorm = 2 * Math.sqrt(squaredGradient) / rows;
+        return percentageError / rows;
+    }
+
+    private int nonZeroWeights(){
+        int count = 0;
+        for(int c = 0; c<features; c++)
+            if(weights[c] != 0) count++;
+        return count;
+    }
+
+    static double softThreshold(double value, double threshold){
+        if(value > threshold) return value - threshold;
+        if(value < -threshold) return value + threshold;
+        return 0;
+    }
+}
@@ -0,0 +1,166 @@
+import java.util.Arrays;
+
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.dense.row.factory.LinearSolverFactory_DDRM;
+import org.ejml.interfaces.linsol.LinearSolverDense;
+
+//proximal gradient LASSO on sufficient statistics, same objective and steps as FusedLassoTrainer:
+//  (1/n)*||y - Xw - b||^2 + lambda*||w||_1
+//for squared loss everything a step needs follows from G = X'X, c = X'y, s = X'1, y'y and sum(y):
+//  X'r     = c - Gw - b*s
+//  sum(r)  = sum(y) - s.w - n*b
+//  ||r||^2 = y'y - 2w'c - 2b*sum(y) + w'Gw + 2b*s.w + n*b^2
+//G comes from FeatureMatrix.gram() (computed once, in parallel) and c from one pass over X, after that every
+//iteration, lambda and warm start costs O(p * non-zero weights) whatever the row count.
+//the only other pass over X is the MAPE of a fit, which needs every residual, so a model measures it only when
+//asked: a regularization path pays for the lambdas whose MAPE is read, not for every point.
+//
+//ridge() solves the ridge normal equations by Cholesky (EJML), as a warm start for train().
+class GramLassoTrainer implements LassoTrainer {
+    private final FeatureMatrix columns;
+    private final double[] y;
+    private final int rows, features;
+    private final double learningRate;
+
+    private final double[][] gram;
+    private final double[] xty, columnSums;
+    private final double targetSum, targetSquares;
+
+    private final double[] weights, product; //product = Gw
+    private double bias, objective, gradientNorm;
+
+    GramLassoTrainer(Dataset data, double learningRate){
+        this(data.getFeatures(), LassoTrainer.target(data), learningRate);
+    }
+
+    GramLassoTrainer(FeatureMatrix columns, double[] target, double learningRate){
+        if(target.length != columns.numRows())
+            throw new IllegalArgumentException("Target has " + target.length + " rows, expected " + columns.numRows());
+        this.columns = columns;
+        this.y = target;
+        this.rows = columns.numRows();
+        this.features = columns.numColumns();
+        this.learningRate = learningRate;
+
+        gram = columns.gram();
+        xty = new double[features];
+        columnSums = new double[features];
+        for(int c = 0; c<features; c++){
+            xty[c] = columns.dot(c, target);
+            columnSums[c] = columns.sum(c);
+        }
+        double sum = 0, squares = 0;
+        for(double d : target){
+            sum += d;
+            squares += d * d;
+        }
+        targetSum = sum;
+        targetSquares = squares;
+
+        weights = new double[features];
+        product = new double[features];
+    }
+
+    //runs up to maxIterations steps, stopping once the objective changes by less than tolerance (relative)
+    @Override
+    public LassoModel train(double lambda, double[] initialWeights, double initialBias, int maxIterations, double tolerance){
+        System.arraycopy(initialWeights, 0, weights, 0, features);
+        bias = initialBias;
+        MetricsSink sink = Metrics.sink();
+        int run = sink == null ? 0 : Metrics.nextRun();
+        double previousObjective = Double.POSITIVE_INFINITY;
+        int j = 0;
+        while(j < maxIterations){
+            long start = sink == null ? 0 : System.nanoTime();
+            step(lambda);
+            j++;
+            if(sink != null)
+                sink.iteration(run, "gram", lambda, j, objective, gradientNorm, System.nanoTime() - start, nonZeroWeights());
+            if(!Double.isFinite(objective)) break;
+            if(Math.abs(previousObjective - objective) <= tolerance * Math.max(1, objective)) break;
+            previousObjective = objective;
+        }
+        return model(lambda, Arrays.copyOf(weights, features), bias, j);
+    }
+
+    //minimizes (1/n)*||y - Xw - b||^2 + alpha*||w||^2 exactly: (G - ss'/n + n*alpha*I) w = c - s*sum(y)/n on centered statistics,
+    //then b = (sum(y) - s.w)/n. null when the system is not positive definite (alpha 0 with collinear columns)
+    LassoModel ridge(double alpha){
+        DMatrixRMaj a = new DMatrixRMaj(features, features), b = new DMatrixRMaj(features, 1), w = new DMatrixRMaj(features, 1);
+        for(int i = 0; i<features; i++){
+            for(int k = 0; k<features; k++)
+                a.set(i, k, gram[i][k] - columnSums[i] * columnSums[k] / rows);
+            a.add(i, i, rows * alpha);
+            b.set(i, 0, xty[i] - columnSums[i] * targetSum / rows);
+        }
+        LinearSolverDense<DMatrixRMaj> cholesky = LinearSolverFactory_DDRM.chol(features);
+        if(!cholesky.setA(a)) return null;
+        cholesky.solve(b, w);
+
+        double[] solution = new double[features];
+        double fitted = 0;
+        for(int i = 0; i<features; i++){
+            solution[i] = w.get(i, 0);
+            fitted += columnSums[i] * solution[i];
+        }
+        System.arraycopy(solution, 0, weights, 0, features);
+        bias = (targetSum - fitted) / rows;
+        return model(0, solution, bias, 0);
+    }
+
+    //one proximal gradient step, leaving the objective and gradient norm of the weights it started from
+    private void step(double lambda){
+        //Gw, a column of G per non-zero weight
+        Arrays.fill(product, 0);
+        for(int k = 0; k<features; k++){
+            double w = weights[k];
+            if(w == 0) continue;
+            double[] g = gram[k]; //G is symmetric, so row k is column k
+            for(int c = 0; c<features; c++)
+                product[c] += g[c] * w;
+        }
+        double wc = 0, wGw = 0, sw = 0, l1 = 0;
+        for(int c = 0; c<features; c++){
+            wc += weights[c] * xty[c];
+            wGw += weights[c] * product[c];
+            sw += weights[c] * columnSums[c];
+            l1 += Math.abs(weights[c]);
+        }
+        double residualSum = targetSum - sw - rows * bias;
+        double squaredError = targetSquares - 2 * wc - 2 * bias * targetSum + wGw + 2 * bias * sw + (double)rows * bias * bias;
+        objective = Math.max(squaredError, 0) / rows + lambda * l1;
+
+        double scale = 2 * learningRate / rows,
+               threshold = learningRate * lambda,
+               squaredGradient = residualSum * residualSum;
+        for(int c = 0; c<features; c++){
+            double dot = xty[c] - product[c] - bias * columnSums[c]; //X_c.r
+            squaredGradient += dot * dot;
+            weights[c] = FusedLassoTrainer.softThreshold(weights[c] + scale * dot, threshold);
+        }
+        bias += scale * residualSum;
+        gradientNorm = 2 * Math.sqrt(squaredGradient) / rows;
+    }
+
+    private LassoModel model(double lambda, double[] weights, double bias, int iterations){
+        return new LassoModel(lambda, weights, bias, () -> meanAbsolutePercentageError(weights, bias), iterations);
+    }
+
+    //MAPE of the given weights, one pass over the non-zero columns
+    private double meanAbsolutePercentageError(double[] weights, double bias){
+        double[] predicted = new double[rows];
+        Arrays.fill(predicted, bias);
+        columns.multiplyAdd(weights, predicted);
+        double percentageError = 0;
+        for(int r = 0; r<rows; r++)
+            percentageError += Math.abs((y[r] - predicted[r]) / y[r]);
+        return percentageError / rows;
+    }
+
+    private int nonZeroWeights(){
+        int count = 0;
+        for(int c = 0; c<features; c++)
+            if(weights[c] != 0) count++;
+        return count;
+    }
+}
@@ -0,0 +1,167 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//what appending training rows needs besides the processed data, kept in columnState.bin:
+//  the merged profile of every raw column trained on so far
+//  the processed segments, one binary data file per batch of rows, with the continuous min/max each was encoded with
+//
+//appended rows are encoded with the widened factors and written as a new segment, old segments are never rewritten.
+//load() lines the segments up against the current factors: a continuous column encoded with older bounds gets
+//the affine map between the two scalings, a dummy bit a segment predates (a category field outgrew its bits) is zero.
+//
+//layout (DataOutputStream, big-endian):
+//  int magic, int version, int columns, per column: UTF name, profile (see ColumnProfile.write)
+//  int segments, per segment: UTF file, int rows, int bounds, per bound: UTF field, double min, double max
+class IncrementalState {
+    private static final int MAGIC = 0x4D4C4349, //"MLCI"
+                             VERSION = 2; //2: profiles carry the variance
+
+    private final LinkedHashMap<String, ColumnProfile> profiles = new LinkedHashMap<>();
+    private final ArrayList<Segment> segments = new ArrayList<>();
+
+    static class Segment {
+        final String file;
+        final int rows;
+        final HashMap<String, double[]> bounds; //field -> {min, max} at encoding time
+
+        Segment(String file, int rows, HashMap<String, double[]> bounds){
+            this.file = file;
+            this.rows = rows;
+            this.bounds = bounds;
+        }
+    }
+
+    //null for a column never trained on
+    ColumnProfile getProfile(String name){ return profiles.get(name); }
+
+    int numSegments(){ return segments.size(); }
+
+    int numRows(){
+        int rows = 0;
+        for(Segment segment : segments) rows += segment.rows;
+        return rows;
+    }
+
+    void mergeProfiles(RawTable raw){
+        for(RawColumn column : raw.getColumns()){
+            ColumnProfile profile = profiles.get(column.getName());
+            if(profile == null) profiles.put(column.getName(), profile = new ColumnProfile());
+            profile.merge(column.getProfile());
+        }
+    }
+
+    void addSegment(String file, int rows, NormalizationFactors normalizationFactors){
+        HashMap<String, double[]> bounds = new HashMap<>();
+        for(FieldEncoder encoder : normalizationFactors){
+            if(encoder instanceof ContinuousEncoder){
+                ContinuousEncoder continuous = (ContinuousEncoder)encoder;
+                bounds.put(encoder.getName(), new double[]{continuous.getMinimum(), continuous.getMaximum()});
+            }
+        }
+        segments.add(new Segment(file, rows, bounds));
+    }
+
+    //file name for the next appended segment
+    String nextSegmentFile(){ return "processedData." + segments.size() + ".bin"; }
+
+    //every segment as one dataset under the current factors
+    Dataset load(String directory, NormalizationFactors normalizationFactors) throws IOException {
+        String[] names = normalizationFactors.featureNames();
+        int rows = numRows();
+        double[][] columns = new double[names.length][rows];
+        double[] target = null;
+        int start = 0;
+        for(Segment segment : segments){
+            Dataset part = BinaryColumnStore.readDataset(directory + segment.file);
+            if(part.numRows() != segment.rows)
+                throw new IOException(segment.file + " has " + part.numRows() + " rows, expected " + segment.rows);
+            HashMap<String, Integer> index = new HashMap<>();
+            for(int i = 0; i<part.numColumns(); i++) index.put(part.getName(i), i);
+
+            int c = 0;
+            for(FieldEncoder encoder : normalizationFactors){
+                double scale = 1, shift = 0;
+                double[] old = segment.bounds.get(encoder.getName());
+                ContinuousEncoder continuous = encoder instanceof ContinuousEncoder ? (ContinuousEncoder)encoder : null;
+                //bounds only widen, so with no range now the segment was encoded with these same bounds
+                if(continuous != null && old != null && continuous.getMaximum() > continuous.getMinimum()){
+                    //(v - min)/range written with the old bounds, rescaled to the current ones.
+                    //a segment encoded with no range holds 0 for its single value old[0], which the shift alone maps
+                    double range = continuous.getMaximum() - continuous.getMinimum();
+                    scale = (old[1] - old[0]) / range;
+                    shift = (old[0] - continuous.getMinimum()) / range;
+                }
+                for(int k = 0; k<encoder.width(); k++, c++){
+                    Integer i = index.get(names[c]);
+                    if(i == null) continue; //a dummy bit added after this segment, zero for all of its rows
+                    double[] from = part.getColumn(i), to = columns[c];
+                    if(scale == 1 && shift == 0) System.arraycopy(from, 0, to, start, segment.rows);
+                    else for(int r = 0; r<segment.rows; r++) to[start + r] = from[r] * scale + shift;
+                }
+            }
+            if(part.hasTarget()){
+                if(target == null) target = new double[rows];
+                System.arraycopy(part.getTarget(), 0, target, start, segment.rows);
+            }
+            start += segment.rows;
+        }
+        return new Dataset(names, columns, target);
+    }
+
+    void write(String directory) throws IOException {
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(directory)))){
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(profiles.size());
+            for(Map.Entry<String, ColumnProfile> entry : profiles.entrySet()){
+                out.writeUTF(entry.getKey());
+                entry.getValue().write(out);
+            }
+            out.writeInt(segments.size());
+            for(Segment segment : segments){
+                out.writeUTF(segment.file);
+                out.writeInt(segment.rows);
+                out.writeInt(segment.bounds.size());
+                for(Map.Entry<String, double[]> bound : segment.bounds.entrySet()){
+                    out.writeUTF(bound.getKey());
+                    out.writeDouble(bound.getValue()[0]);
+                    out.writeDouble(bound.getValue()[1]);
+                }
+            }
+        }
+    }
+
+    static IncrementalState read(String directory) throws IOException {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(directory)))){
+            if(in.readInt() != MAGIC)
+                throw new IOException(directory + " is not an incremental state file");
+            int version = in.readInt();
+            if(version != VERSION)
+                throw new IOException(directory + " has version " + version + ", expected " + VERSION);
+            IncrementalState state = new IncrementalState();
+            int columns = in.readInt();
+            for(int i = 0; i<columns; i++)
+                state.profiles.put(in.readUTF(), ColumnProfile.read(in));
+            int segments = in.readInt();
+            for(int i = 0; i<segments; i++){
+                String file = in.readUTF();
+                int rows = in.readInt();
+                int count = in.readInt();
+                HashMap<String, double[]> bounds = new HashMap<>();
+                for(int j = 0; j<count; j++)
+                    bounds.put(in.readUTF(), new double[]{in.readDouble(), in.readDouble()});
+                state.segments.add(new Segment(file, rows, bounds));
+            }
+            return state;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+//the inner loops of the training, scoring and correlation kernels.
+//INSTANCE is VectorKernels when the JVM was started with --add-modules jdk.incubator.vector, otherwise
+//ScalarKernels. both give the same results up to the order of floating point additions.
+abstract class Kernels {
+    static final Kernels INSTANCE = select();
+
+    //a.b over [from, to)
+    abstract double dot(double[] a, double[] b, int from, int to);
+
+    //a.b over [from, to), products summed in float, for short runs such as a correlation row block
+    abstract double dot(float[] a, float[] b, int from, int to);
+
+    //x.v over the first length entries
+    abstract double dot(float[] x, double[] v, int length);
+
+    //v += scale * x over the first length entries
+    abstract void addScaled(double scale, double[] x, double[] v, int length);
+
+    abstract void addScaled(double scale, float[] x, double[] v, int length);
+
+    String name(){ return getClass().getSimpleName(); }
+
+    private static Kernels select(){
+        if(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()){
+            try {
+                return new VectorKernels();
+            } catch (LinkageError e) {
+                //fall through to the scalar loops
+            }
+        }
+        return new ScalarKernels();
+    }
+}
@@ -0,0 +1,57 @@
+import java.util.Arrays;
+import java.util.function.DoubleSupplier;
+
+//weights and bias of one trained LASSO fit, along with how it was reached.
+//the training MAPE is either known when the fit finishes or measured on first request (see GramLassoTrainer)
+class LassoModel {
+    private final double lambda;
+    private final double[] weights;
+    private final double bias;
+    private double meanAbsolutePercentageError;
+    private DoubleSupplier error; //null once the MAPE is known
+    private final int iterations;
+
+    LassoModel(double lambda, double[] weights, double bias, double meanAbsolutePercentageError, int iterations){
+        this.lambda = lambda;
+        this.weights = weights;
+        this.bias = bias;
+        this.meanAbsolutePercentageError = meanAbsolutePercentageError;
+        this.iterations = iterations;
+    }
+
+    LassoModel(double lambda, double[] weights, double bias, DoubleSupplier error, int iterations){
+        this(lambda, weights, bias, Double.NaN, iterations);
+        this.error = error;
+    }
+
+    double getLambda(){ return lambda; }
+
+    double[] getWeights(){ return weights; }
+
+    double getBias(){ return bias; }
+
+    synchronized double getMeanAbsolutePercentageError(){
+        if(error != null){
+            meanAbsolutePercentageError = error.getAsDouble();
+            error = null;
+        }
+        return meanAbsolutePercentageError;
+    }
+
+    int getIterations(){ return iterations; }
+
+    int nonZeroWeights(){
+        int count = 0;
+        for(double w : weights)
+            if(w != 0) count++;
+        return count;
+    }
+
+    //X*weights + bias, one pass per non-zero weight over that column's non-zeros
+    double[] predict(Dataset data){
+        double[] predicted = new double[data.numRows()];
+        Arrays.fill(predicted, bias);
+        data.getFeatures().multiplyAdd(weights, predicted);
+        return predicted;
+    }
+}
@@ -0,0 +1,14 @@
+//a LASSO solver bound to one training set.
+//implementations keep per-instance work buffers, so an instance must not be shared between threads.
+interface LassoTrainer {
+    //fits lambda starting from the given weights and bias, stopping after maxIterations
+    //or once the solver's own convergence test passes at the given relative tolerance
+    LassoModel train(double lambda, double[] initialWeights, double initialBias, int maxIterations, double tolerance);
+
+    //the target of a training set, which it must have
+    static double[] target(Dataset data){
+        if(!data.hasTarget())
+            throw new IllegalArgumentException("Training data has no target column");
+        return data.getTarget();
+    }
+}
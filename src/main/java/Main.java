@@ -1,3 +1,4 @@
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Random;
@@ -7,6 +8,8 @@ import org.apache.commons.math3.linear.ArrayRealVector;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
 
+//Metrics.Stage resources only time their try block, so they are never referenced in it
+@SuppressWarnings("try")
 public class Main {
     //program parameters
     final static boolean DEBUG_MODE = false;
@@ -15,8 +18,19 @@ public class Main {
                         LASSO_LAMBDA_END = 196,   //set equal to start for no testing
                         DELTA_LAMBDA = 1; //cant be zero!!!
     final static int ITERATIONS = 200;
+    final static TrainingEngine TRAINING_ENGINE = TrainingEngine.FUSED;
+    final static boolean REGULARIZATION_PATH = false; //sweep the lambda grid in parallel (not with COMMONS_MATH)
+    final static double CONVERGENCE_TOLERANCE = 1e-7; //relative change that ends a fit, see each LassoTrainer
+    final static double RIDGE_INITIALIZATION = 0; //GRAM only: start from the Cholesky ridge solution with this penalty instead of random weights, 0 to skip
+    final static int CROSS_VALIDATION_FOLDS = 0; //k-fold CV at LASSO_LAMBDA_END before training (not with COMMONS_MATH), 0 to skip
+    final static boolean RECORD_METRICS = true; //stage and per-iteration metrics, written to METRICS_DIRECTORY
+    final static boolean STREAM_SCORING = false; //score test.csv through StreamingScorer into Id,SalePrice lines instead of the in-memory table
+    final static boolean EXPORT_MODEL = true; //write the model artifact to MODEL_DIRECTORY
+    final static boolean CHECK_PREDICTOR = false; //with EXPORT_MODEL, re-read test.csv as strings and compare the Predictor with the batch scores
+    final static String PARTITION_FIELD = null; //also train one model per level of this categorical field (e.g. "Neighborhood"), null for the global model only
+    final static int MIN_PARTITION_ROWS = 30; //levels with fewer training rows are scored by the global model
     public static void main(String[] args) {
-        final boolean CALCULATE_DEPENDENCIES = true,
+        final boolean APPEND_NEW_DATA = false, //fold NEW_DATA_DIRECTORY into the processed data instead of processing train.csv
             ASSUME_STRINGS_CATEGORIGAL = true;
 
         //data information
@@ -29,11 +43,28 @@ public class Main {
         final String DEPENDENT_VARIABLE = "SalePrice",
             RAW_DIRECTORY = "Data/Raw/",
             PROCESSED_DIRECTORY = "Data/Processed/",
-            OUTPUT_DIRECTORY = "Data/Output/output.csv";
+            NEW_DATA_DIRECTORY = "Data/Raw/new.csv",
+            OUTPUT_DIRECTORY = "Data/Output/output.csv",
+            MODEL_DIRECTORY = "Data/Output/model.bin",
+            METRICS_DIRECTORY = "Data/Output/metrics.csv";
+
+        if(RECORD_METRICS) {
+            try {
+                Metrics.install(new CSVMetricsSink(METRICS_DIRECTORY));
+            }
+            catch (IOException e) {
+                System.out.println("Could not open " + METRICS_DIRECTORY + ", running without metrics");
+                e.printStackTrace();
+            }
+        }
 
         CSVHandler csvh = new CSVHandler(DEBUG_MODE);
-        ArrayList<ArrayList<Double>> processedData;
-        if(CALCULATE_DEPENDENCIES) {
+        Dataset processedData;
+        if(APPEND_NEW_DATA) {
+            processedData = csvh.appendCSV(NEW_DATA_DIRECTORY, PROCESSED_DIRECTORY, DEPENDENT_VARIABLE);
+        }
+        else{
+            //unchanged stages come from the stage cache, so this is only slow when train.csv or a setting changed
             processedData = csvh.processCSV(RAW_DIRECTORY + "train.csv",
                     PROCESSED_DIRECTORY,
                     DEPENDENT_VARIABLE,
@@ -41,63 +72,141 @@ public class Main {
                     otherCategoricalData,
                     excludedData);
         }
-        else{
-            processedData = csvh.readProcessedCSV(PROCESSED_DIRECTORY);
-        }
         if(DEBUG_MODE) System.out.println("Processed Data successfully loaded");
 
         Random random = new Random();
-        RealVector weights = new ArrayRealVector(random.doubles(processedData.size()-1).toArray());
+        double[] weights = random.doubles(processedData.numColumns()).toArray();
         double bias = random.nextDouble();
 
-        RealVector Y = new ArrayRealVector(processedData.remove(processedData.size()-1)
-                .stream()
-                .mapToDouble(Double::doubleValue)
-                .toArray()
-        );
-
-        double[][] processedDataArray = new double[processedData.size()][];
-        for (int i = 0; i<processedData.size(); i++) {
-            processedDataArray[i] = processedData.get(i)
-                    .stream()
-                    .mapToDouble(Double::valueOf)
-                    .toArray();
+        if(CROSS_VALIDATION_FOLDS > 1 && TRAINING_ENGINE != TrainingEngine.COMMONS_MATH) {
+            CrossValidation.Fold[] folds;
+            try(Metrics.Stage stage = Metrics.stage("cross-validate")) {
+                folds = new CrossValidation(processedData, TRAINING_ENGINE, LEARNING_RATE, ITERATIONS, CONVERGENCE_TOLERANCE)
+                        .run(CROSS_VALIDATION_FOLDS, LASSO_LAMBDA_END, weights, bias, random.nextLong());
+            }
+            for(int i = 0; i<folds.length; i++)
+                System.out.println("Fold " + (i+1) + " MAPE: " + folds[i].meanAbsolutePercentageError
+                        + " RMSE: " + folds[i].rootMeanSquaredError + " Iterations: " + folds[i].model.getIterations());
+            System.out.println("Cross-validated MAPE: " + CrossValidation.meanAbsolutePercentageError(folds)
+                    + " RMSE: " + CrossValidation.rootMeanSquaredError(folds));
         }
-        RealMatrix X = new Array2DRowRealMatrix(processedDataArray).transpose();
+
         //LASSO
         double meanPercentageError = 0;
+        try(Metrics.Stage stage = Metrics.stage("train")) {
+            if(TRAINING_ENGINE == TrainingEngine.COMMONS_MATH) {
+                RealVector W = new ArrayRealVector(weights, false);
+                RealVector Y = new ArrayRealVector(processedData.getTarget(), false);
+                //the dataset is column-major, so wrapping it without a copy gives X transposed
+                RealMatrix Xt = new Array2DRowRealMatrix(processedData.getColumns(), false);
 
-        for(double lasso = LASSO_LAMBDA_START; lasso <= LASSO_LAMBDA_END; lasso+=DELTA_LAMBDA) {
-            for (int j = 0; j < ITERATIONS; j++) {
-                RealVector predictedY = X.operate(weights).mapAdd(bias);
-                meanPercentageError = meanAbsolutePercentageError(Y, predictedY);
-                //System.out.println(meanPercentageError);
-                weights = updateWeights(X, Y, predictedY, weights, lasso);
-                bias = updateBias(Y, predictedY, bias);
-                if(meanPercentageError>100) j = ITERATIONS;
+                for (double lasso = LASSO_LAMBDA_START; lasso <= LASSO_LAMBDA_END; lasso += DELTA_LAMBDA) {
+                    for (int j = 0; j < ITERATIONS; j++) {
+                        RealVector predictedY = Xt.preMultiply(W).mapAdd(bias);
+                        meanPercentageError = meanAbsolutePercentageError(Y, predictedY);
+                        //System.out.println(meanPercentageError);
+                        W = updateWeights(Xt, Y, predictedY, W, lasso);
+                        bias = updateBias(Y, predictedY, bias);
+                        if (meanPercentageError > 100) j = ITERATIONS;
+                    }
+                    System.out.println("MAPE: " + meanPercentageError + " Lasso: " + lasso);
+                }
+                weights = W.toArray();
+            }
+            else if(REGULARIZATION_PATH) {
+                double[] lambdas = RegularizationPath.grid(LASSO_LAMBDA_START, LASSO_LAMBDA_END, DELTA_LAMBDA);
+                LassoModel[] path = new RegularizationPath(processedData, TRAINING_ENGINE, LEARNING_RATE, ITERATIONS, CONVERGENCE_TOLERANCE)
+                        .sweep(lambdas, weights, bias);
+                LassoModel last = path[path.length-1];
+                //a GRAM fit measures its MAPE with a pass over X when asked, so only the selected lambda's is printed
+                for(LassoModel model : path)
+                    System.out.println((model == last || TRAINING_ENGINE != TrainingEngine.GRAM ? "MAPE: " + model.getMeanAbsolutePercentageError() + " " : "")
+                            + "Lasso: " + model.getLambda() + " Iterations: " + model.getIterations() + " Non-zero weights: " + model.nonZeroWeights());
+                weights = last.getWeights();
+                bias = last.getBias();
+                meanPercentageError = last.getMeanAbsolutePercentageError();
+            }
+            else {
+                LassoTrainer trainer = TRAINING_ENGINE.create(processedData, LEARNING_RATE);
+                if(trainer instanceof GramLassoTrainer && RIDGE_INITIALIZATION > 0) {
+                    LassoModel ridge = ((GramLassoTrainer)trainer).ridge(RIDGE_INITIALIZATION);
+                    if(ridge != null) {
+                        weights = ridge.getWeights();
+                        bias = ridge.getBias();
+                        System.out.println("Ridge start MAPE: " + ridge.getMeanAbsolutePercentageError());
+                    }
+                }
+                LassoModel model = null;
+                for (double lasso = LASSO_LAMBDA_START; lasso <= LASSO_LAMBDA_END; lasso += DELTA_LAMBDA) {
+                    model = trainer.train(lasso, weights, bias, ITERATIONS, CONVERGENCE_TOLERANCE);
+                    weights = model.getWeights();
+                    bias = model.getBias();
+                    //as on the path, a GRAM fit's MAPE is only measured for the last lambda
+                    if(TRAINING_ENGINE != TrainingEngine.GRAM)
+                        System.out.println("MAPE: " + model.getMeanAbsolutePercentageError() + " Lasso: " + lasso);
+                }
+                if(model != null) {
+                    meanPercentageError = model.getMeanAbsolutePercentageError();
+                    if(TRAINING_ENGINE == TrainingEngine.GRAM)
+                        System.out.println("MAPE: " + meanPercentageError + " Lasso: " + model.getLambda());
+                }
+            }
+        }
+
+        PartitionedTraining.Model partitioned = null;
+        if(PARTITION_FIELD != null && TRAINING_ENGINE != TrainingEngine.COMMONS_MATH) {
+            FieldEncoder field = csvh.readNormalizationFactors(PROCESSED_DIRECTORY + "normalizationFactors.csv").get(PARTITION_FIELD);
+            if(!(field instanceof CategoricalEncoder))
+                System.out.println(PARTITION_FIELD + " is not a categorical field, scoring with the global model only");
+            else {
+                //level codes come from all of the field's dummy columns, including any the pruner dropped
+                int[] codes = PartitionedTraining.codes(csvh.readAllProcessedData(PROCESSED_DIRECTORY), (CategoricalEncoder)field);
+                try(Metrics.Stage stage = Metrics.stage("partition")) {
+                    partitioned = new PartitionedTraining(processedData, codes, (CategoricalEncoder)field, TRAINING_ENGINE, LEARNING_RATE,
+                            ITERATIONS, CONVERGENCE_TOLERANCE, MIN_PARTITION_ROWS, Runtime.getRuntime().availableProcessors())
+                            .train(LASSO_LAMBDA_END, new LassoModel(LASSO_LAMBDA_END, weights, bias, meanPercentageError, ITERATIONS));
+                }
+                for(int code = 0; code<partitioned.partitions.length; code++) {
+                    LassoModel model = partitioned.partitions[code];
+                    if(model != null)
+                        System.out.println(PARTITION_FIELD + " " + partitioned.level(code) + " (" + partitioned.rows[code] + " rows) MAPE: "
+                                + model.getMeanAbsolutePercentageError() + " Iterations: " + model.getIterations());
+                }
+                System.out.println(partitioned.numPartitions() + " " + PARTITION_FIELD + " models, partitioned MAPE: "
+                        + partitioned.meanAbsolutePercentageError(processedData, codes));
+                if(STREAM_SCORING || EXPORT_MODEL)
+                    System.out.println("The model artifact and streamed scores use the global model only");
             }
-            System.out.println("MAPE: " + meanPercentageError + " Lasso: " + lasso);
         }
 
         //    <-----------------------------TESTING--------------------------------->
-        ArrayList<ArrayList<Double>> testData = csvh.getTestingData(RAW_DIRECTORY + "test.csv",
+        if(STREAM_SCORING) {
+            ModelArtifact artifact = new ModelArtifact(
+                    csvh.readNormalizationFactors(PROCESSED_DIRECTORY + "normalizationFactors.csv"), weights, bias);
+            try(Metrics.Stage stage = Metrics.stage("score")) {
+                if(EXPORT_MODEL) artifact.write(MODEL_DIRECTORY);
+                long scored = new StreamingScorer(artifact.compile(), Runtime.getRuntime().availableProcessors())
+                        .score(RAW_DIRECTORY + "test.csv", "Id", OUTPUT_DIRECTORY);
+                System.out.println("Scored " + scored + " rows into " + OUTPUT_DIRECTORY);
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+            System.out.println("Final mean percentage error: " + meanPercentageError);
+            Metrics.close();
+            return;
+        }
+        Dataset allTestData = csvh.getAllTestingData(RAW_DIRECTORY + "test.csv",
                 PROCESSED_DIRECTORY,
                 DEPENDENT_VARIABLE);
+        Dataset testData = csvh.readNormalizationFactors(PROCESSED_DIRECTORY + "normalizationFactors.csv").project(allTestData);
 
-        ArrayList<Double> ids = testData.remove(0);
-        //testData.trimToSize();
-        processedDataArray = new double[testData.size()][];
-
-
-        for (int i = 0; i<testData.size(); i++) {
-            processedDataArray[i] = testData.get(i)
-                    .stream()
-                    .mapToDouble(Double::valueOf)
-                    .toArray();
+        double[] ids = testData.getIds();
+        double[] result;
+        try(Metrics.Stage stage = Metrics.stage("score")) {
+            result = partitioned != null ? partitioned.predict(testData, PartitionedTraining.codes(allTestData, partitioned.field))
+                    : new LassoModel(LASSO_LAMBDA_END, weights, bias, meanPercentageError, ITERATIONS).predict(testData);
         }
-        RealMatrix testX = new Array2DRowRealMatrix(processedDataArray);
-        testX = testX.transpose();
-        double[] result = testX.operate(weights).mapAdd(bias).toArray();
 
         String[][] output = new String[2][];
         output[0] = new String[result.length+1];
@@ -107,7 +216,7 @@ public class Main {
 
         for(int i = 0; i<result.length; i++){
             output[0][i+1] = (result[i]+"");
-            output[1][i+1] = (ids.get(i).toString());
+            output[1][i+1] = (ids[i]+"");
         }
 
         System.out.println("\n\nRESULTS:");
@@ -120,17 +229,49 @@ public class Main {
         }
         System.out.println("Final mean percentage error: " + meanPercentageError);
         csvh.writeOutputCSV(OUTPUT_DIRECTORY, output);
+
+        if(EXPORT_MODEL) {
+            ModelArtifact artifact = new ModelArtifact(
+                    csvh.readNormalizationFactors(PROCESSED_DIRECTORY + "normalizationFactors.csv"), weights, bias);
+            try {
+                artifact.write(MODEL_DIRECTORY);
+                System.out.println("Model written to " + MODEL_DIRECTORY);
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if(EXPORT_MODEL && CHECK_PREDICTOR) {
+            try {
+                Predictor predictor = ModelArtifact.read(MODEL_DIRECTORY).compile();
+                String[][] rows = csvh.readCSV(RAW_DIRECTORY + "test.csv");
+                Predictor.RowFormat format = predictor.format(rows[0]);
+                double[] predicted = predictor.predict(Arrays.asList(rows).subList(1, rows.length), format);
+                //the artifact holds the global model, so that is what it is checked against
+                double[] expected = partitioned == null ? result
+                        : new LassoModel(LASSO_LAMBDA_END, weights, bias, meanPercentageError, ITERATIONS).predict(testData);
+                double maxDifference = 0;
+                for(int i = 0; i<predicted.length; i++)
+                    maxDifference = Math.max(maxDifference, Math.abs(predicted[i] - expected[i]));
+                System.out.println("Largest Predictor difference: " + maxDifference);
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        Metrics.close();
     }
 
     // <-------------------------- LASSO implementation functions ------------------------------>
-    private static RealVector updateWeights(RealMatrix X, RealVector Y, RealVector predictedY, RealVector weights, double lasso){
+    //Xt holds one feature per row (the transpose of the design matrix)
+    static RealVector updateWeights(RealMatrix Xt, RealVector Y, RealVector predictedY, RealVector weights, double lasso){
         int numDataPoints = weights.getDimension();
         RealVector updatedWeights = new ArrayRealVector(new double[numDataPoints]);
         RealVector L1 = proximalL1Norm(weights, LEARNING_RATE);
         double dW;
         for(int i = 0; i<numDataPoints; i++){
             double difference = Y.getEntry(i) - predictedY.getEntry(i);
-            double sumOfDotProducts = Arrays.stream((X.getColumnVector(i)).mapMultiply(difference).toArray()).sum();
+            double sumOfDotProducts = Arrays.stream((Xt.getRowVector(i)).mapMultiply(difference).toArray()).sum();
             //this is the result of summing all dot products of the columns of X and Y-predictedY
 
             dW = (-2*(sumOfDotProducts)/numDataPoints + lasso*L1.getEntry(i));
@@ -140,7 +281,7 @@ public class Main {
         return updatedWeights;
     }
 
-    private static double updateBias(RealVector Y, RealVector predictedY, double bias){
+    static double updateBias(RealVector Y, RealVector predictedY, double bias){
         double scalingFactor = -2/Y.getDimension();
         double dB = scalingFactor * Arrays.stream(Y.subtract(predictedY).toArray()).sum();
         return bias - LEARNING_RATE * dB;
@@ -160,12 +301,12 @@ public class Main {
         return v;
     }
 
-    private static double rootMeanSquaredError(RealVector Y, RealVector predictedY){
+    static double rootMeanSquaredError(RealVector Y, RealVector predictedY){
         RealVector residual = Y.subtract(predictedY);
-        return Math.sqrt(Arrays.stream(residual.ebeMultiply(residual).toArray()).sum());
+        return Math.sqrt(Arrays.stream(residual.ebeMultiply(residual).toArray()).sum() / Y.getDimension());
     }
 
-    private static double meanAbsolutePercentageError(RealVector Y, RealVector predictedY){
+    static double meanAbsolutePercentageError(RealVector Y, RealVector predictedY){
         double numberOfDataPoints = Y.getDimension();
         RealVector percentageError = Y.subtract(predictedY).ebeDivide(Y).map(Math::abs);
         return (1/numberOfDataPoints) * Arrays.stream(percentageError.toArray()).sum();
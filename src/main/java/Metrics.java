@@ -0,0 +1,69 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//process-wide instrumentation. nothing is recorded until a sink is installed.
+//stages are timed with try(Metrics.Stage s = Metrics.stage("train")){ ... }, trainers report iterations directly.
+//while no sink is installed stage() hands back a shared no-op and trainers skip their timing and norms
+//behind a single check per iteration, so leaving the calls in costs nothing measurable.
+class Metrics {
+    private static final Stage DISABLED = new Stage(null, 0, 0);
+    private static final AtomicInteger runs = new AtomicInteger();
+    private static volatile MetricsSink sink;
+
+    private Metrics(){}
+
+    static void install(MetricsSink metricsSink){ sink = metricsSink; }
+
+    static boolean enabled(){ return sink != null; }
+
+    //the installed sink, null when disabled
+    static MetricsSink sink(){ return sink; }
+
+    //a fresh id for one trainer run
+    static int nextRun(){ return runs.incrementAndGet(); }
+
+    static Stage stage(String name){
+        if(sink == null) return DISABLED;
+        return new Stage(name, System.nanoTime(), allocatedBytes());
+    }
+
+    //flushes and detaches the sink
+    static void close(){
+        MetricsSink s = sink;
+        sink = null;
+        if(s != null) s.close();
+    }
+
+    //bytes allocated so far by every live thread, -1 when the JVM cannot tell.
+    //threads that ended during a stage drop out, so parallel stages can read a little low
+    private static long allocatedBytes(){
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if(!(threads instanceof com.sun.management.ThreadMXBean)) return -1;
+        com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean)threads;
+        if(!allocation.isThreadAllocatedMemorySupported() || !allocation.isThreadAllocatedMemoryEnabled()) return -1;
+        long total = 0;
+        for(long bytes : allocation.getThreadAllocatedBytes(threads.getAllThreadIds()))
+            if(bytes > 0) total += bytes;
+        return total;
+    }
+
+    static class Stage implements AutoCloseable {
+        private final String name;
+        private final long start, startBytes;
+
+        private Stage(String name, long start, long startBytes){
+            this.name = name;
+            this.start = start;
+            this.startBytes = startBytes;
+        }
+
+        @Override
+        public void close(){
+            MetricsSink s = sink;
+            if(name == null || s == null) return;
+            long bytes = startBytes < 0 ? -1 : allocatedBytes() - startBytes;
+            s.stage(name, System.nanoTime() - start, bytes);
+        }
+    }
+}
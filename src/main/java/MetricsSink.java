@@ -0,0 +1,11 @@
+//receives what Metrics records. implementations may be called from several threads at once.
+interface MetricsSink {
+    //a pipeline stage: wall time and bytes allocated by all threads while it ran
+    void stage(String stage, long nanos, long allocatedBytes);
+
+    //one iteration of a trainer. run tells apart concurrent fits (cross-validation folds, path chunks),
+    //loss is the LASSO objective, gradientNorm the norm of the gradient of its smooth part
+    void iteration(int run, String trainer, double lambda, int iteration, double loss, double gradientNorm, long nanos, int nonZeroWeights);
+
+    void close();
+}
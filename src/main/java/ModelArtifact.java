@@ -0,0 +1,101 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+//everything needed to score raw records without the training files: the encoders and the fitted weights.
+//layout (DataOutputStream, big-endian):
+//  int magic, int version, double bias, int features, features doubles (weights), int fields
+//  per field: byte type, UTF name, then min, max and fill doubles (continuous) or int count + UTF levels (categorical)
+//  int pruned, pruned UTF column names
+//the weights cover only the columns that survived pruning, in the order the encoders produce them
+class ModelArtifact {
+    private static final int MAGIC = 0x4D4C4D41, //"MLMA"
+                             VERSION = 2;
+    private static final byte CONTINUOUS = 0, CATEGORICAL = 1;
+
+    private final NormalizationFactors normalizationFactors;
+    private final double[] weights;
+    private final double bias;
+
+    ModelArtifact(NormalizationFactors normalizationFactors, double[] weights, double bias){
+        int features = normalizationFactors.selectedFeatures().length;
+        if(features != weights.length)
+            throw new IllegalArgumentException("The encoders produce " + features + " features but there are " + weights.length + " weights");
+        this.normalizationFactors = normalizationFactors;
+        this.weights = weights;
+        this.bias = bias;
+    }
+
+    NormalizationFactors getNormalizationFactors(){ return normalizationFactors; }
+
+    double[] getWeights(){ return weights; }
+
+    double getBias(){ return bias; }
+
+    Predictor compile(){ return new Predictor(this); }
+
+    void write(String directory) throws IOException {
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(directory)))){
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeDouble(bias);
+            out.writeInt(weights.length);
+            for(double w : weights) out.writeDouble(w);
+            out.writeInt(normalizationFactors.size());
+            for(FieldEncoder encoder : normalizationFactors){
+                if(encoder instanceof CategoricalEncoder){
+                    String[] levels = ((CategoricalEncoder)encoder).getLevels();
+                    out.writeByte(CATEGORICAL);
+                    out.writeUTF(encoder.getName());
+                    out.writeInt(levels.length);
+                    for(String level : levels) out.writeUTF(level);
+                }
+                else{
+                    ContinuousEncoder continuous = (ContinuousEncoder)encoder;
+                    out.writeByte(CONTINUOUS);
+                    out.writeUTF(encoder.getName());
+                    out.writeDouble(continuous.getMinimum());
+                    out.writeDouble(continuous.getMaximum());
+                    out.writeDouble(continuous.getFill());
+                }
+            }
+            String[] pruned = normalizationFactors.getPruned();
+            out.writeInt(pruned.length);
+            for(String name : pruned) out.writeUTF(name);
+        }
+    }
+
+    static ModelArtifact read(String directory) throws IOException {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(directory)))){
+            if(in.readInt() != MAGIC)
+                throw new IOException(directory + " is not a model artifact");
+            int version = in.readInt();
+            if(version != VERSION)
+                throw new IOException(directory + " has version " + version + ", expected " + VERSION);
+            double bias = in.readDouble();
+            double[] weights = new double[in.readInt()];
+            for(int i = 0; i<weights.length; i++) weights[i] = in.readDouble();
+            int fields = in.readInt();
+            NormalizationFactors normalizationFactors = new NormalizationFactors();
+            for(int i = 0; i<fields; i++){
+                byte type = in.readByte();
+                String name = in.readUTF();
+                if(type == CATEGORICAL){
+                    String[] levels = new String[in.readInt()];
+                    for(int j = 0; j<levels.length; j++) levels[j] = in.readUTF();
+                    normalizationFactors.add(new CategoricalEncoder(name, Arrays.asList(levels)));
+                }
+                else normalizationFactors.add(new ContinuousEncoder(name, in.readDouble(), in.readDouble(), in.readDouble()));
+            }
+            String[] pruned = new String[in.readInt()];
+            for(int i = 0; i<pruned.length; i++) pruned[i] = in.readUTF();
+            normalizationFactors.prune(Arrays.asList(pruned));
+            return new ModelArtifact(normalizationFactors, weights, bias);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+//the encoders for every processed field, in processing order, with O(1) lookup by field name,
+//and the processed columns FeaturePruner dropped. training and scoring see only the columns that survived,
+//project() and expand() move between the two layouts.
+//the pruned names are saved as one extra factor row: Pruned, name...
+class NormalizationFactors implements Iterable<FieldEncoder> {
+    private final ArrayList<FieldEncoder> encoders = new ArrayList<>();
+    private final HashMap<String, FieldEncoder> byName = new HashMap<>();
+    private final LinkedHashSet<String> pruned = new LinkedHashSet<>();
+
+    void add(FieldEncoder encoder){
+        encoders.add(encoder);
+        byName.put(encoder.getName(), encoder);
+    }
+
+    //null when the field is not processed
+    FieldEncoder get(String name){ return byName.get(name); }
+
+    int size(){ return encoders.size(); }
+
+    @Override
+    public Iterator<FieldEncoder> iterator(){ return encoders.iterator(); }
+
+    //names of the processed columns, in the order processData creates them
+    String[] featureNames(){
+        ArrayList<String> names = new ArrayList<>();
+        for(FieldEncoder encoder : encoders)
+            for(int i = 0; i<encoder.width(); i++)
+                names.add(encoder.outputName(i));
+        return names.toArray(new String[0]);
+    }
+
+    void prune(Collection<String> names){ pruned.addAll(names); }
+
+    String[] getPruned(){ return pruned.toArray(new String[0]); }
+
+    //names of the processed columns that survived pruning, in featureNames() order
+    String[] selectedFeatures(){
+        return Arrays.stream(featureNames()).filter(name -> !pruned.contains(name)).toArray(String[]::new);
+    }
+
+    //the surviving columns of data, sharing its arrays
+    Dataset project(Dataset data){
+        if(pruned.isEmpty()) return data;
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<double[]> columns = new ArrayList<>();
+        for(int i = 0; i<data.numColumns(); i++){
+            if(pruned.contains(data.getName(i))) continue;
+            names.add(data.getName(i));
+            columns.add(data.getColumn(i));
+        }
+        return new Dataset(names.toArray(new String[0]), columns.toArray(new double[0][]), data.getTarget(), data.getIds());
+    }
+
+    //weights over selectedFeatures() spread over featureNames(), zero for the pruned columns
+    double[] expand(double[] selectedWeights){
+        String[] names = featureNames();
+        double[] weights = new double[names.length];
+        int k = 0;
+        for(int i = 0; i<names.length; i++)
+            if(!pruned.contains(names[i])) weights[i] = selectedWeights[k++];
+        if(k != selectedWeights.length)
+            throw new IllegalArgumentException(k + " features survived pruning but there are " + selectedWeights.length + " weights");
+        return weights;
+    }
+
+    static NormalizationFactors fromRows(ArrayList<ArrayList<String>> rows){
+        NormalizationFactors normalizationFactors = new NormalizationFactors();
+        for(ArrayList<String> nF : rows){
+            if(nF.get(0).equals("Pruned")) normalizationFactors.prune(nF.subList(1, nF.size()));
+            else normalizationFactors.add(FieldEncoder.fromFactors(nF));
+        }
+        return normalizationFactors;
+    }
+
+    ArrayList<ArrayList<String>> toRows(){
+        ArrayList<ArrayList<String>> rows = new ArrayList<>();
+        for(FieldEncoder encoder : encoders)
+            rows.add(encoder.toFactors());
+        if(!pruned.isEmpty()){
+            ArrayList<String> nF = new ArrayList<>();
+            nF.add("Pruned");
+            nF.addAll(pruned);
+            rows.add(nF);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,56 @@
+//hand-written replacement for matching "-?\d+(\.\d+)?" and then calling Double.parseDouble.
+//a single pass over the characters, no regex and no exceptions.
+class NumberScanner {
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for(int i = 1; i<POWERS_OF_TEN.length; i++)
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i-1] * 10;
+    }
+
+    private NumberScanner(){}
+
+    //the value of s, or NaN when s is not an optionally negative decimal like 12 or -3.25
+    static double parse(String s){
+        int length = s.length(), i = 0;
+        boolean negative = false;
+        if(i < length && s.charAt(i) == '-'){
+            negative = true;
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0, fractionDigits = 0;
+        int start = i;
+        for(; i<length; i++){
+            char c = s.charAt(i);
+            if(c < '0' || c > '9') break;
+            if(digits < 18) mantissa = mantissa * 10 + (c - '0');
+            if(mantissa != 0) digits++;
+        }
+        if(i == start) return Double.NaN;
+
+        if(i < length){
+            if(s.charAt(i) != '.') return Double.NaN;
+            i++;
+            int fractionStart = i;
+            for(; i<length; i++){
+                char c = s.charAt(i);
+                if(c < '0' || c > '9') return Double.NaN;
+                if(digits < 18){
+                    mantissa = mantissa * 10 + (c - '0');
+                    fractionDigits++;
+                }
+                if(mantissa != 0) digits++;
+            }
+            if(i == fractionStart) return Double.NaN;
+        }
+
+        //both operands are exact doubles here, so the division is correctly rounded
+        if(digits <= 15 && fractionDigits < POWERS_OF_TEN.length){
+            double value = mantissa / POWERS_OF_TEN[fractionDigits];
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(s); //the grammar was checked, this cannot throw
+    }
+}
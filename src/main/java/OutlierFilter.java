@@ -0,0 +1,133 @@
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.function.Function;
+
+//drops or clips outlying values of the continuous columns between reading and profiling, with no prompts.
+//  NONE       keeps every value
+//  IQR        drops the rows with a value outside [Q1 - k*IQR, Q3 + k*IQR] in any continuous column
+//  Z_SCORE    drops the rows with a value more than z standard deviations from its column's mean
+//  WINSORIZE  keeps every row and clips values to the IQR fences
+//quartiles, means and variances come from profiles and NA cells are never outliers: the table's own profiles, or on
+//the append path every row trained on so far merged with the batch, so a small batch is not judged by itself alone.
+//a column whose fences have no width or hold a single value (nearly every value the same) is left alone, as every
+//other value would be an outlier. the filtered table gets fresh profiles, so factors, encoded rows and the incremental
+//state all see the same rows. when a table is filtered by its own profiles, a column that the rows dropped for other
+//columns leave constant is reported: its encoder has no range and encodes it as 0 (see ContinuousEncoder), which
+//CONSTANT pruning drops.
+class OutlierFilter {
+    enum Policy { NONE, IQR, Z_SCORE, WINSORIZE }
+
+    private OutlierFilter(){}
+
+    //continuous names the columns to check, fence is k for IQR and WINSORIZE and z for Z_SCORE
+    static RawTable apply(RawTable raw, Set<String> continuous, Policy policy, double fence){
+        RawTable filtered = apply(raw, continuous, name -> raw.getColumn(name).getProfile(), policy, fence);
+        RawColumn[] columns = raw.getColumns(), kept = filtered.getColumns();
+        ArrayList<String> constant = new ArrayList<>();
+        for(int c = 0; c<columns.length; c++){
+            ColumnProfile before = columns[c].getProfile(), after = kept[c].getProfile();
+            if(continuous.contains(columns[c].getName()) && before.getMinimum() < before.getMaximum()
+                    && after.getValueCount() > 0 && after.getMinimum() == after.getMaximum())
+                constant.add(columns[c].getName());
+        }
+        if(!constant.isEmpty())
+            System.out.println("Outlier filtering left " + constant.size() + " continuous fields constant, they encode as 0: " + constant);
+        return filtered;
+    }
+
+    //as above with the fences taken from reference(name) instead of the table's own profiles
+    static RawTable apply(RawTable raw, Set<String> continuous, Function<String, ColumnProfile> reference, Policy policy, double fence){
+        if(policy == Policy.NONE) return raw;
+        RawColumn[] columns = raw.getColumns();
+        int rows = raw.numRows();
+        boolean[] dropped = new boolean[rows];
+        double[][] clipped = new double[columns.length][];
+
+        for(int c = 0; c<columns.length; c++){
+            RawColumn column = columns[c];
+            if(!continuous.contains(column.getName()) || !column.isNumeric()) continue;
+            double[] values = column.getValues();
+            double[] bounds = bounds(reference.apply(column.getName()), policy, fence);
+            if(bounds == null) continue;
+            double lower = bounds[0], upper = bounds[1];
+            if(policy == Policy.WINSORIZE){
+                double[] clip = null;
+                for(int r = 0; r<rows; r++){
+                    double v = values[r];
+                    if(v < lower || v > upper){
+                        if(clip == null) clip = values.clone();
+                        clip[r] = v < lower ? lower : upper;
+                    }
+                }
+                clipped[c] = clip;
+            }
+            else{
+                double low = Double.POSITIVE_INFINITY, high = Double.NEGATIVE_INFINITY;
+                for(double v : values){
+                    if(v >= lower && v <= upper){ //false for NaN
+                        if(v < low) low = v;
+                        if(v > high) high = v;
+                    }
+                }
+                if(low >= high) continue; //only one value is inside the fences, dropping the rest would leave a constant column
+                for(int r = 0; r<rows; r++){
+                    double v = values[r];
+                    if(v < lower || v > upper) dropped[r] = true;
+                }
+            }
+        }
+
+        int kept = 0;
+        for(boolean d : dropped)
+            if(!d) kept++;
+        boolean changed = kept < rows;
+        for(double[] clip : clipped) changed |= clip != null;
+        if(!changed) return raw;
+
+        int[] keep = new int[kept];
+        for(int r = 0, i = 0; r<rows; r++)
+            if(!dropped[r]) keep[i++] = r;
+        RawColumn[] filtered = new RawColumn[columns.length];
+        for(int c = 0; c<columns.length; c++)
+            filtered[c] = select(columns[c], clipped[c], keep);
+        return new RawTable(filtered);
+    }
+
+    //{lower, upper}, or null when the column should not be filtered
+    private static double[] bounds(ColumnProfile profile, Policy policy, double fence){
+        if(profile == null || profile.getValueCount() < 2) return null;
+        if(policy == Policy.Z_SCORE){
+            double mean = profile.getMean(), deviation = Math.sqrt(profile.getVariance());
+            return deviation > 0 ? new double[]{mean - fence * deviation, mean + fence * deviation} : null;
+        }
+        double lowerQuartile = profile.getQuantile(.25), upperQuartile = profile.getQuantile(.75),
+                range = upperQuartile - lowerQuartile;
+        return range > 0 ? new double[]{lowerQuartile - fence * range, upperQuartile + fence * range} : null;
+    }
+
+    //the kept rows of a column (clip replacing its values when given), with a profile of just those rows
+    private static RawColumn select(RawColumn column, double[] clip, int[] keep){
+        double[] values = clip != null ? clip : column.getValues();
+        //clipped values no longer match the dictionary, a continuous column does not need it
+        boolean dictionary = column.hasDictionary() && clip == null;
+        double[] selectedValues = values == null ? null : new double[keep.length];
+        int[] codes = column.getCodes(), selectedCodes = dictionary ? new int[keep.length] : null;
+        ColumnProfile profile = new ColumnProfile();
+        for(int i = 0; i<keep.length; i++){
+            int r = keep[i];
+            if(dictionary) selectedCodes[i] = codes[r];
+            if(values != null){
+                double v = selectedValues[i] = values[r];
+                if(Double.isNaN(v)) profile.addNA();
+                else profile.addValue(v);
+                continue;
+            }
+            String cell = column.getString(r);
+            double v;
+            if(cell.equals("NA")) profile.addNA();
+            else if(!Double.isNaN(v = NumberScanner.parse(cell))) profile.addValue(v);
+            else profile.addOther();
+        }
+        return new RawColumn(column.getName(), selectedValues, selectedCodes, dictionary ? column.getLevels() : null, keep.length, profile);
+    }
+}
@@ -0,0 +1,162 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+//one LASSO model per level of a categorical field, trained concurrently.
+//a row's level is read back off the field's dummy columns (see CategoricalEncoder) before pruning: every bit is needed,
+//since without a pruned bit distinct levels share a code. the codes come in with the data, and every partition
+//trains on a FeatureMatrix row view of the shared processed columns, never a copy.
+//fits are warm-started from the global model and run on a fixed pool, biggest partitions first.
+//partitions smaller than minRows, and levels never trained on, are scored by the global model.
+class PartitionedTraining {
+    private final Dataset data;
+    private final int[] codes;
+    private final CategoricalEncoder field;
+    private final TrainingEngine engine;
+    private final double learningRate, tolerance;
+    private final int maxIterations, minRows, threads;
+
+    //codes holds every row's level code, see codes()
+    PartitionedTraining(Dataset data, int[] codes, CategoricalEncoder field, TrainingEngine engine, double learningRate, int maxIterations,
+                        double tolerance, int minRows, int threads){
+        LassoTrainer.target(data);
+        if(codes.length != data.numRows())
+            throw new IllegalArgumentException(codes.length + " level codes for " + data.numRows() + " rows of " + field.getName());
+        this.data = data;
+        this.codes = codes;
+        this.field = field;
+        this.engine = engine;
+        this.learningRate = learningRate;
+        this.maxIterations = maxIterations;
+        this.tolerance = tolerance;
+        this.minRows = minRows;
+        this.threads = Math.max(1, threads);
+    }
+
+    //the global model and one model per level code, null where the global model is used
+    static class Model {
+        final CategoricalEncoder field;
+        final LassoModel global;
+        final LassoModel[] partitions;
+        final int[] rows; //training rows per level code
+
+        Model(CategoricalEncoder field, LassoModel global, LassoModel[] partitions, int[] rows){
+            this.field = field;
+            this.global = global;
+            this.partitions = partitions;
+            this.rows = rows;
+        }
+
+        String level(int code){ return code == CategoricalEncoder.UNKNOWN ? "unknown" : field.getLevels()[code - 1]; }
+
+        int numPartitions(){
+            int count = 0;
+            for(LassoModel model : partitions)
+                if(model != null) count++;
+            return count;
+        }
+
+        //every row scored by its level's model, codes as given by codes()
+        double[] predict(Dataset data, int[] codes){
+            int[][] groups = group(codes, partitions.length);
+            FeatureMatrix features = data.getFeatures();
+            double[] predicted = new double[data.numRows()];
+            for(int code = 0; code<groups.length; code++){
+                int[] rows = groups[code];
+                if(rows.length == 0) continue;
+                LassoModel model = partitions[code] != null ? partitions[code] : global;
+                double[] part = new double[rows.length];
+                Arrays.fill(part, model.getBias());
+                features.rows(rows).multiplyAdd(model.getWeights(), part);
+                for(int i = 0; i<rows.length; i++)
+                    predicted[rows[i]] = part[i];
+            }
+            return predicted;
+        }
+
+        double meanAbsolutePercentageError(Dataset data, int[] codes){
+            double[] predicted = predict(data, codes), target = data.getTarget();
+            double sum = 0;
+            for(int r = 0; r<predicted.length; r++)
+                sum += Math.abs((target[r] - predicted[r]) / target[r]);
+            return sum / predicted.length;
+        }
+    }
+
+    Model train(double lambda, LassoModel global){
+        int[][] groups = group(codes, field.numLevels() + 1);
+        int[] rows = new int[groups.length];
+        ArrayList<Integer> trained = new ArrayList<>();
+        for(int code = 0; code<groups.length; code++){
+            rows[code] = groups[code].length;
+            if(code != CategoricalEncoder.UNKNOWN && rows[code] >= minRows) trained.add(code);
+        }
+        trained.sort(Comparator.comparingInt((Integer code) -> rows[code]).reversed());
+
+        FeatureMatrix features = data.getFeatures();
+        double[] target = data.getTarget();
+        LassoModel[] partitions = new LassoModel[groups.length];
+        ArrayList<Callable<LassoModel>> fits = new ArrayList<>();
+        for(int code : trained){
+            int[] selected = groups[code];
+            fits.add(() -> engine.create(features.rows(selected), CrossValidation.select(target, selected), learningRate)
+                    .train(lambda, global.getWeights(), global.getBias(), maxIterations, tolerance));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, fits.size())), runnable -> {
+            Thread thread = new Thread(runnable, "partition");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            ArrayList<Future<LassoModel>> results = new ArrayList<>(pool.invokeAll(fits));
+            for(int i = 0; i<results.size(); i++)
+                partitions[trained.get(i)] = results.get(i).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while training partitions of " + field.getName(), e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return new Model(field, global, partitions, rows);
+    }
+
+    //level code of every row from all of the field's dummy columns, so data has to be the processed data before
+    //pruning (CSVHandler.readAllProcessedData, getAllTestingData)
+    static int[] codes(Dataset data, CategoricalEncoder field){
+        int[] codes = new int[data.numRows()];
+        String[] names = data.getNames();
+        for(int k = 0; k<field.width(); k++){
+            int column = Arrays.asList(names).indexOf(field.outputName(k));
+            if(column < 0)
+                throw new IllegalArgumentException(field.outputName(k) + " is missing, level codes need the data before pruning");
+            double[] bits = data.getColumn(column);
+            for(int r = 0; r<codes.length; r++)
+                if(bits[r] != 0) codes[r] |= 1 << k;
+        }
+        return codes;
+    }
+
+    //row indices per code, ascending. codes past the end (levels the model never saw) count as unknown
+    private static int[][] group(int[] codes, int numCodes){
+        int[] counts = new int[numCodes];
+        for(int code : codes)
+            counts[code < numCodes ? code : CategoricalEncoder.UNKNOWN]++;
+        int[][] groups = new int[numCodes][];
+        for(int c = 0; c<numCodes; c++) groups[c] = new int[counts[c]];
+        int[] next = new int[numCodes];
+        for(int r = 0; r<codes.length; r++){
+            int code = codes[r] < numCodes ? codes[r] : CategoricalEncoder.UNKNOWN;
+            groups[code][next[code]++] = r;
+        }
+        return groups;
+    }
+}
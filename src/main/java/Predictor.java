@@ -0,0 +1,122 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//scores raw records with a compiled ModelArtifact. immutable, so one instance can serve every thread.
+//each field's encoding and weights are folded into a direct contribution to the prediction:
+//  continuous  slope * value + intercept, or the fill's contribution for NA and unparseable cells
+//  categorical a lookup from level to the summed weights of that code's dummy bits (unknown levels use code 0)
+//so a record costs one hash lookup or one parse per field, with no CSV or matrix machinery.
+class Predictor {
+    private final String[] fields;
+    private final HashMap<String, Integer> fieldIndex = new HashMap<>();
+    private final boolean[] categorical;
+    private final double[] slopes, intercepts, fills;
+    private final ArrayList<HashMap<String, Double>> levelContributions = new ArrayList<>();
+    private final double[] unknownContributions;
+    private final double bias;
+
+    Predictor(ModelArtifact artifact){
+        NormalizationFactors normalizationFactors = artifact.getNormalizationFactors();
+        double[] weights = normalizationFactors.expand(artifact.getWeights()); //pruned columns contribute nothing
+        int count = normalizationFactors.size();
+        fields = new String[count];
+        categorical = new boolean[count];
+        slopes = new double[count];
+        intercepts = new double[count];
+        fills = new double[count];
+        unknownContributions = new double[count];
+        bias = artifact.getBias();
+
+        int f = 0, offset = 0;
+        for(FieldEncoder encoder : normalizationFactors){
+            fields[f] = encoder.getName();
+            fieldIndex.put(encoder.getName(), f);
+            if(encoder instanceof CategoricalEncoder){
+                CategoricalEncoder categoricalEncoder = (CategoricalEncoder)encoder;
+                categorical[f] = true;
+                HashMap<String, Double> contributions = new HashMap<>();
+                for(String level : categoricalEncoder.getLevels())
+                    contributions.put(level, contribution(categoricalEncoder.code(level), weights, offset, encoder.width()));
+                levelContributions.add(contributions);
+                unknownContributions[f] = contribution(CategoricalEncoder.UNKNOWN, weights, offset, encoder.width());
+            }
+            else{
+                ContinuousEncoder continuous = (ContinuousEncoder)encoder;
+                if(Double.isNaN(continuous.getFill()))
+                    throw new IllegalArgumentException("Field " + fields[f] + " has no NA fill, reprocess the training data");
+                double range = continuous.getMaximum() - continuous.getMinimum();
+                //a zero-range field encodes as 0 (see ContinuousEncoder), so it contributes nothing
+                slopes[f] = range == 0 ? 0 : weights[offset] / range;
+                intercepts[f] = range == 0 ? 0 : -weights[offset] * continuous.getMinimum() / range;
+                fills[f] = slopes[f] * continuous.getFill() + intercepts[f];
+                levelContributions.add(null);
+            }
+            offset += encoder.width();
+            f++;
+        }
+    }
+
+    //column positions of the model's fields in a header, -1 for fields the header lacks
+    static class RowFormat {
+        private final int[] columns;
+
+        private RowFormat(int[] columns){ this.columns = columns; }
+    }
+
+    RowFormat format(String[] header){
+        HashMap<String, Integer> positions = new HashMap<>();
+        for(int i = 0; i<header.length; i++)
+            positions.put(header[i], i);
+        int[] columns = new int[fields.length];
+        for(int f = 0; f<fields.length; f++){
+            Integer position = positions.get(fields[f]);
+            columns[f] = position == null ? -1 : position;
+        }
+        return new RowFormat(columns);
+    }
+
+    //a record laid out as described by format
+    double predict(String[] row, RowFormat format){
+        double prediction = bias;
+        for(int f = 0; f<fields.length; f++){
+            int column = format.columns[f];
+            prediction += contribution(f, column < 0 || column >= row.length ? null : row[column]);
+        }
+        return prediction;
+    }
+
+    //a record keyed by field name, missing fields count as NA
+    double predict(Map<String, String> record){
+        double prediction = bias;
+        for(int f = 0; f<fields.length; f++)
+            prediction += contribution(f, record.get(fields[f]));
+        return prediction;
+    }
+
+    double[] predict(List<String[]> rows, RowFormat format){
+        double[] predictions = new double[rows.size()];
+        for(int i = 0; i<predictions.length; i++)
+            predictions[i] = predict(rows.get(i), format);
+        return predictions;
+    }
+
+    boolean hasField(String name){ return fieldIndex.containsKey(name); }
+
+    private double contribution(int f, String cell){
+        if(categorical[f]){
+            Double contribution = cell == null ? null : levelContributions.get(f).get(cell);
+            return contribution == null ? unknownContributions[f] : contribution;
+        }
+        double value = cell == null ? Double.NaN : NumberScanner.parse(cell);
+        return Double.isNaN(value) ? fills[f] : slopes[f] * value + intercepts[f];
+    }
+
+    private static double contribution(int code, double[] weights, int offset, int width){
+        double sum = 0;
+        for(int k = 0; k<width; k++)
+            sum += CategoricalEncoder.bit(code, k) * weights[offset + k];
+        return sum;
+    }
+}
@@ -0,0 +1,118 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+//streaming, mergeable quantile sketch (a deterministic KLL-style compactor stack).
+//level h holds up to CAPACITY values, each standing for 2^h inputs. a full level is sorted and every
+//other value is promoted to the level above, alternating which half is kept so the error stays unbiased.
+//columns shorter than CAPACITY are kept exactly.
+class QuantileSketch {
+    static final int CAPACITY = 256;
+
+    private double[][] levels = new double[1][CAPACITY];
+    private int[] sizes = new int[1];
+    private int compactions;
+    private long count;
+
+    //writes the levels as they stand, so a sketch read back keeps merging exactly as this one would
+    void write(DataOutputStream out) throws IOException {
+        out.writeLong(count);
+        out.writeInt(compactions);
+        out.writeInt(levels.length);
+        for(int h = 0; h<levels.length; h++){
+            out.writeInt(sizes[h]);
+            for(int i = 0; i<sizes[h]; i++)
+                out.writeDouble(levels[h][i]);
+        }
+    }
+
+    static QuantileSketch read(DataInputStream in) throws IOException {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.count = in.readLong();
+        sketch.compactions = in.readInt();
+        int numLevels = in.readInt();
+        sketch.levels = new double[numLevels][CAPACITY];
+        sketch.sizes = new int[numLevels];
+        for(int h = 0; h<numLevels; h++){
+            sketch.sizes[h] = in.readInt();
+            for(int i = 0; i<sketch.sizes[h]; i++)
+                sketch.levels[h][i] = in.readDouble();
+        }
+        return sketch;
+    }
+
+    long getCount(){ return count; }
+
+    void add(double value){
+        count++;
+        insert(0, value);
+    }
+
+    //folds another sketch into this one, as if its values had been added here
+    void merge(QuantileSketch other){
+        count += other.count;
+        for(int h = 0; h<other.levels.length; h++)
+            for(int i = 0; i<other.sizes[h]; i++)
+                insert(h, other.levels[h][i]);
+    }
+
+    //approximate value at fraction q (0 to 1) of the sorted inputs, NaN when empty.
+    //while nothing has been compacted this is the exact, linearly interpolated quantile
+    double quantile(double q){
+        if(count == 0) return Double.NaN;
+        int numLevels = levels.length;
+        double[][] sorted = new double[numLevels][];
+        for(int h = 0; h<numLevels; h++){
+            sorted[h] = Arrays.copyOf(levels[h], sizes[h]);
+            Arrays.sort(sorted[h]);
+        }
+        if(count == sizes[0]){
+            double[] exact = sorted[0];
+            double position = q * (exact.length - 1);
+            int below = (int)Math.floor(position);
+            if(below + 1 >= exact.length) return exact[exact.length - 1];
+            return exact[below] + (position - below) * (exact[below + 1] - exact[below]);
+        }
+
+        //merge the sorted levels, value i of level h weighing 2^h, until the weight passes the rank
+        long weightSum = 0;
+        for(int h = 0; h<numLevels; h++)
+            weightSum += (long)sorted[h].length << h;
+        double rank = q * weightSum;
+        int[] next = new int[numLevels];
+        long cumulative = 0;
+        double value = Double.NaN;
+        while(true){
+            int smallest = -1;
+            for(int h = 0; h<numLevels; h++)
+                if(next[h] < sorted[h].length && (smallest < 0 || sorted[h][next[h]] < sorted[smallest][next[smallest]]))
+                    smallest = h;
+            if(smallest < 0) return value;
+            value = sorted[smallest][next[smallest]++];
+            cumulative += 1L << smallest;
+            if(cumulative >= rank) return value;
+        }
+    }
+
+    private void insert(int h, double value){
+        if(h >= levels.length){
+            //merging a taller sketch can skip levels
+            int numLevels = levels.length;
+            levels = Arrays.copyOf(levels, h + 1);
+            for(int i = numLevels; i<=h; i++) levels[i] = new double[CAPACITY];
+            sizes = Arrays.copyOf(sizes, h + 1);
+        }
+        levels[h][sizes[h]++] = value;
+        if(sizes[h] == CAPACITY) compact(h);
+    }
+
+    private void compact(int h){
+        double[] level = levels[h];
+        Arrays.sort(level);
+        int offset = (compactions++) & 1;
+        sizes[h] = 0;
+        for(int i = offset; i<CAPACITY; i += 2)
+            insert(h + 1, level[i]);
+    }
+}
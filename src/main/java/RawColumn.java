@@ -0,0 +1,51 @@
+//one ingested CSV column.
+//numeric columns keep their values (NaN marks NA), low cardinality columns keep dictionary codes, many keep both.
+class RawColumn {
+    private final String name;
+    private final double[] values;
+    private final int[] codes;
+    private final String[] levels;
+    private final int rows;
+    private final ColumnProfile profile;
+
+    RawColumn(String name, double[] values, int[] codes, String[] levels, int rows, ColumnProfile profile){
+        this.name = name;
+        this.values = values;
+        this.codes = codes;
+        this.levels = levels;
+        this.rows = rows;
+        this.profile = profile;
+    }
+
+    String getName(){ return name; }
+
+    int numRows(){ return rows; }
+
+    //true when every cell was a number or NA
+    boolean isNumeric(){ return values != null; }
+
+    boolean hasDictionary(){ return levels != null; }
+
+    //type, counts, min, max, mean and quartiles from ingestion, so nothing rescans the column
+    ColumnProfile getProfile(){ return profile; }
+
+    //parsed values with NaN for NA, only for numeric columns
+    double[] getValues(){ return values; }
+
+    //index into getLevels() for every row, only when hasDictionary()
+    int[] getCodes(){ return codes; }
+
+    //distinct cells in order of first appearance, only when hasDictionary()
+    String[] getLevels(){ return levels; }
+
+    String getString(int row){
+        if(levels != null) return levels[codes[row]];
+        return format(values[row]);
+    }
+
+    static String format(double value){
+        if(Double.isNaN(value)) return "NA";
+        if(value == Math.rint(value) && Math.abs(value) < 1e15) return Long.toString((long)value);
+        return Double.toString(value);
+    }
+}
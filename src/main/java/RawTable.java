@@ -0,0 +1,96 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+
+//the columns of a raw CSV file, in file order.
+//write/read keep a table for the stage cache, layout (DataOutputStream, big-endian):
+//  int magic, int version, int columns, per column: UTF name, int rows, profile (see ColumnProfile.write),
+//  boolean values [rows doubles], boolean codes [rows ints, int levels, UTF per level]
+class RawTable {
+    private static final int MAGIC = 0x4D4C4352, //"MLCR"
+                             VERSION = 2; //2: profiles carry the variance
+
+    private final RawColumn[] columns;
+    private final HashMap<String, Integer> index = new HashMap<>();
+    private final int rows;
+
+    RawTable(RawColumn[] columns){
+        this.columns = columns;
+        this.rows = columns.length > 0 ? columns[0].numRows() : 0;
+        for(int i = 0; i<columns.length; i++)
+            index.put(columns[i].getName(), i);
+    }
+
+    int numRows(){ return rows; }
+
+    int numColumns(){ return columns.length; }
+
+    RawColumn[] getColumns(){ return columns; }
+
+    RawColumn getColumn(int column){ return columns[column]; }
+
+    //null when the file has no such column
+    RawColumn getColumn(String name){
+        Integer i = index.get(name);
+        return i == null ? null : columns[i];
+    }
+
+    void write(String directory) throws IOException {
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(directory), 1 << 16))){
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(columns.length);
+            for(RawColumn column : columns){
+                out.writeUTF(column.getName());
+                out.writeInt(column.numRows());
+                column.getProfile().write(out);
+                double[] values = column.getValues();
+                out.writeBoolean(values != null);
+                if(values != null)
+                    for(double value : values) out.writeDouble(value);
+                out.writeBoolean(column.hasDictionary());
+                if(column.hasDictionary()){
+                    for(int code : column.getCodes()) out.writeInt(code);
+                    out.writeInt(column.getLevels().length);
+                    for(String level : column.getLevels()) out.writeUTF(level);
+                }
+            }
+        }
+    }
+
+    static RawTable read(String directory) throws IOException {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(directory), 1 << 16))){
+            if(in.readInt() != MAGIC)
+                throw new IOException(directory + " is not a raw table file");
+            int version = in.readInt();
+            if(version != VERSION)
+                throw new IOException(directory + " has version " + version + ", expected " + VERSION);
+            RawColumn[] columns = new RawColumn[in.readInt()];
+            for(int i = 0; i<columns.length; i++){
+                String name = in.readUTF();
+                int rows = in.readInt();
+                ColumnProfile profile = ColumnProfile.read(in);
+                double[] values = null;
+                if(in.readBoolean()){
+                    values = new double[rows];
+                    for(int r = 0; r<rows; r++) values[r] = in.readDouble();
+                }
+                int[] codes = null;
+                String[] levels = null;
+                if(in.readBoolean()){
+                    codes = new int[rows];
+                    for(int r = 0; r<rows; r++) codes[r] = in.readInt();
+                    levels = new String[in.readInt()];
+                    for(int l = 0; l<levels.length; l++) levels[l] = in.readUTF();
+                }
+                columns[i] = new RawColumn(name, values, codes, levels, rows, profile);
+            }
+            return new RawTable(columns);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+//fits a whole grid of lambdas on a fork-join pool.
+//the grid is split into at most one contiguous chunk per worker. the largest lambda of every chunk is fitted first,
+//in one sequential pass from the top of the grid down, so each chunk starts from a warm solution. the chunks are then
+//swept in parallel from their largest lambda down, every fit warm-started from its neighbouring lambda's solution.
+class RegularizationPath {
+    private final Dataset data;
+    private final TrainingEngine engine;
+    private final double learningRate, tolerance;
+    private final int maxIterations;
+    private final ForkJoinPool pool;
+
+    RegularizationPath(Dataset data, TrainingEngine engine, double learningRate, int maxIterations, double tolerance, ForkJoinPool pool){
+        this.data = data;
+        this.engine = engine;
+        this.learningRate = learningRate;
+        this.maxIterations = maxIterations;
+        this.tolerance = tolerance;
+        this.pool = pool;
+    }
+
+    RegularizationPath(Dataset data, TrainingEngine engine, double learningRate, int maxIterations, double tolerance){
+        this(data, engine, learningRate, maxIterations, tolerance, ForkJoinPool.commonPool());
+    }
+
+    //start, start+delta, ... up to and including end
+    static double[] grid(double start, double end, double delta){
+        int count = (int)Math.floor((end - start) / delta + 1e-9) + 1;
+        double[] lambdas = new double[Math.max(count, 0)];
+        for(int i = 0; i<lambdas.length; i++)
+            lambdas[i] = start + i * delta;
+        return lambdas;
+    }
+
+    //models[i] is the fit for lambdas[i]
+    LassoModel[] sweep(double[] lambdas, double[] initialWeights, double initialBias){
+        LassoModel[] models = new LassoModel[lambdas.length];
+        if(lambdas.length == 0) return models;
+        int chunk = (int)Math.ceil(lambdas.length / (double)Math.min(pool.getParallelism(), lambdas.length));
+
+        //the chunk boundaries, each warm-started from the one above it
+        LassoTrainer trainer = engine.create(data, learningRate);
+        double[] weights = initialWeights;
+        double bias = initialBias;
+        for(int from = (lambdas.length - 1) / chunk * chunk; from>=0; from -= chunk){
+            int top = Math.min(from + chunk, lambdas.length) - 1;
+            LassoModel model = trainer.train(lambdas[top], weights, bias, maxIterations, tolerance);
+            models[top] = model;
+            weights = model.getWeights();
+            bias = model.getBias();
+        }
+        pool.invoke(new Sweep(lambdas, models, 0, lambdas.length, chunk));
+        return models;
+    }
+
+    private class Sweep extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] lambdas;
+        private final LassoModel[] models;
+        private final int from, to, chunk;
+
+        Sweep(double[] lambdas, LassoModel[] models, int from, int to, int chunk){
+            this.lambdas = lambdas;
+            this.models = models;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute(){
+            if(to - from > chunk){
+                //split on a chunk boundary, so every leaf is one chunk whose top was fitted by sweep
+                int middle = from + (to - from + chunk) / (2 * chunk) * chunk;
+                invokeAll(new Sweep(lambdas, models, from, middle, chunk),
+                        new Sweep(lambdas, models, middle, to, chunk));
+                return;
+            }
+            if(to - from < 2) return;
+            //the trainer's buffers are per worker, the columns are shared read-only
+            LassoTrainer trainer = engine.create(data, learningRate);
+            double[] weights = models[to - 1].getWeights();
+            double bias = models[to - 1].getBias();
+            for(int i = to - 2; i>=from; i--){
+                LassoModel model = trainer.train(lambdas[i], weights, bias, maxIterations, tolerance);
+                models[i] = model;
+                weights = model.getWeights();
+                bias = model.getBias();
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+//plain loops, used when the Vector API module is not loaded
+class ScalarKernels extends Kernels {
+    @Override
+    double dot(double[] a, double[] b, int from, int to){
+        double sum = 0;
+        for(int i = from; i<to; i++)
+            sum += a[i] * b[i];
+        return sum;
+    }
+
+    @Override
+    double dot(float[] a, float[] b, int from, int to){
+        float sum = 0;
+        for(int i = from; i<to; i++)
+            sum += a[i] * b[i];
+        return sum;
+    }
+
+    @Override
+    double dot(float[] x, double[] v, int length){
+        double sum = 0;
+        for(int i = 0; i<length; i++)
+            sum += x[i] * v[i];
+        return sum;
+    }
+
+    @Override
+    void addScaled(double scale, double[] x, double[] v, int length){
+        for(int i = 0; i<length; i++)
+            v[i] += scale * x[i];
+    }
+
+    @Override
+    void addScaled(double scale, float[] x, double[] v, int length){
+        for(int i = 0; i<length; i++)
+            v[i] += scale * x[i];
+    }
+}
@@ -0,0 +1,139 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+//content-addressed cache for the preprocessing stages, one file per entry named <key>.<stage>.
+//a key is the SHA-256 of the stage name, the key of the stage it was computed from and the settings it used,
+//with the input file's own content hash at the root, so an entry can only be found again by identical inputs
+//and any change to the file or a setting misses every stage downstream of it.
+//a hit touches the entry's modification time and every put evicts the least recently used entries
+//until the directory is back under the size limit.
+class StageCache {
+    static final int FORMAT = 2; //part of every key, bump when a stage's output or file layout changes
+
+    private final File directory;
+    private final long limit;
+    private final boolean enabled;
+
+    interface Reader<T> {
+        T read(String path) throws IOException;
+    }
+
+    interface Writer {
+        void write(String path) throws IOException;
+    }
+
+    StageCache(String directory, long limit, boolean enabled){
+        this.directory = new File(directory);
+        this.limit = limit;
+        this.enabled = enabled;
+    }
+
+    //SHA-256 of the file's bytes, null when the cache is off
+    String fileKey(String path) throws IOException {
+        if(!enabled) return null;
+        MessageDigest digest = sha256();
+        try(InputStream in = new FileInputStream(path)){
+            byte[] buffer = new byte[1 << 16];
+            for(int read; (read = in.read(buffer)) > 0; )
+                digest.update(buffer, 0, read);
+        }
+        return hex(digest.digest());
+    }
+
+    //key of a stage computed from parent with the given settings, lists and enums hash by their toString
+    static String key(String stage, String parent, Object... settings){
+        MessageDigest digest = sha256();
+        update(digest, "v" + FORMAT);
+        update(digest, stage);
+        update(digest, String.valueOf(parent));
+        for(Object setting : settings)
+            update(digest, String.valueOf(setting));
+        return hex(digest.digest());
+    }
+
+    //the cached output, or null when there is none or it can no longer be read
+    <T> T get(String stage, String key, Reader<T> reader){
+        if(!enabled || key == null) return null;
+        File entry = entry(stage, key);
+        if(!entry.exists()) return null;
+        try {
+            T value = reader.read(entry.getPath());
+            entry.setLastModified(System.currentTimeMillis());
+            System.out.println("Reusing cached " + stage + " stage " + key.substring(0, 12));
+            return value;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error: could not read cached " + stage + " stage " + entry + ", recomputing");
+            System.err.println("Message: \n" + e.getMessage());
+            entry.delete();
+            return null;
+        }
+    }
+
+    //writes next to the entry and renames it into place, so a failed write never leaves a readable entry
+    void put(String stage, String key, Writer writer){
+        if(!enabled || key == null) return;
+        if(!directory.exists() && !directory.mkdirs()){
+            System.err.println("Error: could not create cache directory " + directory);
+            return;
+        }
+        File entry = entry(stage, key), partial = new File(directory, entry.getName() + ".partial");
+        try {
+            writer.write(partial.getPath());
+            if(!partial.renameTo(entry)){
+                entry.delete();
+                if(!partial.renameTo(entry)) throw new IOException("could not rename " + partial + " to " + entry);
+            }
+        } catch (IOException e) {
+            System.err.println("Error: could not cache " + stage + " stage in " + entry);
+            System.err.println("Message: \n" + e.getMessage());
+            partial.delete();
+            return;
+        }
+        evict(entry);
+    }
+
+    //drops the least recently used entries beyond the limit, never the one just written
+    private void evict(File keep){
+        File[] entries = directory.listFiles(File::isFile);
+        if(entries == null) return;
+        long size = 0;
+        for(File entry : entries) size += entry.length();
+        if(size <= limit) return;
+        Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+        for(File entry : entries){
+            if(size <= limit) break;
+            if(entry.equals(keep)) continue;
+            long length = entry.length();
+            if(entry.delete()) size -= length;
+        }
+    }
+
+    private File entry(String stage, String key){ return new File(directory, key + "." + stage); }
+
+    private static void update(MessageDigest digest, String s){
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        digest.update(new byte[]{(byte)(bytes.length >>> 24), (byte)(bytes.length >>> 16), (byte)(bytes.length >>> 8), (byte)bytes.length});
+        digest.update(bytes);
+    }
+
+    private static MessageDigest sha256(){
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); //every JRE has to provide it
+        }
+    }
+
+    private static String hex(byte[] bytes){
+        StringBuilder s = new StringBuilder(bytes.length * 2);
+        for(byte b : bytes) s.append(Character.forDigit((b >>> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return s.toString();
+    }
+}
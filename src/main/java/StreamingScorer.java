@@ -0,0 +1,118 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+//scores a CSV of raw records into Id,SalePrice lines without ever holding the whole file.
+//a reader thread parses blocks of BLOCK_ROWS rows and hands each to the worker pool, workers score and
+//format their block with the Predictor, and the calling thread writes the blocks back in input order.
+//the blocks travel in a bounded queue of futures, so once the writer falls behind the reader waits:
+//at most BLOCKS_IN_FLIGHT blocks (plus the one being parsed) are in memory whatever the file size.
+class StreamingScorer {
+    static final int BLOCK_ROWS = 4096;
+
+    private final Predictor predictor;
+    private final int workers, blocksInFlight;
+
+    StreamingScorer(Predictor predictor, int workers){
+        this.predictor = predictor;
+        this.workers = Math.max(1, workers);
+        this.blocksInFlight = 2 * this.workers;
+    }
+
+    //returns the number of rows scored
+    long score(String inputDirectory, String idField, String outputDirectory) throws IOException {
+        ArrayBlockingQueue<Future<String>> pending = new ArrayBlockingQueue<>(blocksInFlight);
+        ExecutorService pool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "scorer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long[] rows = new long[1];
+        Thread reader = new Thread(() -> read(inputDirectory, idField, pool, pending, rows), "scorer-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        try(BufferedWriter writer = new BufferedWriter(new FileWriter(outputDirectory), 1 << 16)){
+            writer.write("Id,SalePrice");
+            writer.newLine();
+            while(true){
+                String block = pending.take().get();
+                if(block == null) break; //end of input
+                writer.write(block);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while scoring " + inputDirectory, e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof IOException) throw (IOException)e.getCause();
+            if(e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+            throw new IOException(e.getCause());
+        } finally {
+            reader.interrupt();
+            pool.shutdownNow();
+        }
+        return rows[0];
+    }
+
+    //parses blocks until the end of the file, then queues null. a failure is queued in place of the next block
+    private void read(String inputDirectory, String idField, ExecutorService pool, ArrayBlockingQueue<Future<String>> pending, long[] rows){
+        try {
+            try(CSVStreamReader csv = new CSVStreamReader(inputDirectory)){
+                ArrayList<String> cells = new ArrayList<>();
+                if(!csv.readRow(cells))
+                    throw new IOException(inputDirectory + " is empty");
+                String[] header = cells.toArray(new String[0]);
+                int id = cells.indexOf(idField);
+                if(id < 0)
+                    throw new IOException(inputDirectory + " has no " + idField + " column");
+                Predictor.RowFormat format = predictor.format(header);
+
+                String[][] block = new String[BLOCK_ROWS][];
+                int size = 0;
+                while(csv.readRow(cells)){
+                    block[size++] = cells.toArray(new String[0]);
+                    if(size == BLOCK_ROWS){
+                        submit(pool, pending, block, size, format, id);
+                        rows[0] += size;
+                        block = new String[BLOCK_ROWS][];
+                        size = 0;
+                    }
+                }
+                if(size > 0){
+                    submit(pool, pending, block, size, format, id);
+                    rows[0] += size;
+                }
+            }
+            pending.put(CompletableFuture.completedFuture(null));
+        } catch (InterruptedException e) {
+            //the writer gave up, nobody is waiting for more blocks
+        } catch (IOException | RuntimeException e) {
+            CompletableFuture<String> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            try {
+                pending.put(failed);
+            } catch (InterruptedException ignored) {
+            }
+        }
+    }
+
+    private void submit(ExecutorService pool, ArrayBlockingQueue<Future<String>> pending, String[][] block, int size,
+                        Predictor.RowFormat format, int id) throws InterruptedException {
+        pending.put(pool.submit(() -> {
+            StringBuilder lines = new StringBuilder(size * 32);
+            for(int i = 0; i<size; i++){
+                String[] row = block[i];
+                lines.append(id < row.length ? row[id] : "").append(',')
+                        .append(predictor.predict(row, format)).append('\n');
+            }
+            return lines.toString();
+        }));
+    }
+}
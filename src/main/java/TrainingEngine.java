@@ -0,0 +1,22 @@
+//LASSO implementations Main can train with
+enum TrainingEngine {
+    COMMONS_MATH, //original RealMatrix/RealVector loop, kept for comparison
+    FUSED,        //FusedLassoTrainer, primitive arrays and preallocated buffers
+    COORDINATE_DESCENT,           //CoordinateDescentTrainer with residual updates
+    COVARIANCE_COORDINATE_DESCENT, //CoordinateDescentTrainer with cached x_j'x_k covariance updates
+    GRAM;         //GramLassoTrainer, the FUSED steps on X'X and X'y so iterations do not depend on the row count
+
+    LassoTrainer create(Dataset data, double learningRate){
+        return create(data.getFeatures(), LassoTrainer.target(data), learningRate);
+    }
+
+    LassoTrainer create(FeatureMatrix columns, double[] target, double learningRate){
+        switch(this){
+            case FUSED: return new FusedLassoTrainer(columns, target, learningRate);
+            case COORDINATE_DESCENT: return new CoordinateDescentTrainer(columns, target, false);
+            case COVARIANCE_COORDINATE_DESCENT: return new CoordinateDescentTrainer(columns, target, true);
+            case GRAM: return new GramLassoTrainer(columns, target, learningRate);
+            default: throw new UnsupportedOperationException(this + " training runs inline in Main");
+        }
+    }
+}
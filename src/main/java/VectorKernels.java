@@ -0,0 +1,74 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+//Vector API loops at the widest shape the CPU has (4 doubles on AVX2, 8 on AVX-512).
+//float columns are loaded at half that width and widened, so they line up lane for lane with the doubles.
+//only loaded once Kernels has checked for the jdk.incubator.vector module.
+class VectorKernels extends Kernels {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> HALF_FLOATS = VectorSpecies.of(float.class, VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+
+    @Override
+    double dot(double[] a, double[] b, int from, int to){
+        DoubleVector sum = DoubleVector.zero(DOUBLES);
+        int i = from, upper = from + DOUBLES.loopBound(to - from);
+        for(; i<upper; i += DOUBLES.length())
+            sum = DoubleVector.fromArray(DOUBLES, a, i).fma(DoubleVector.fromArray(DOUBLES, b, i), sum);
+        double total = sum.reduceLanes(VectorOperators.ADD);
+        for(; i<to; i++)
+            total += a[i] * b[i];
+        return total;
+    }
+
+    @Override
+    double dot(float[] a, float[] b, int from, int to){
+        FloatVector sum = FloatVector.zero(FLOATS);
+        int i = from, upper = from + FLOATS.loopBound(to - from);
+        for(; i<upper; i += FLOATS.length())
+            sum = FloatVector.fromArray(FLOATS, a, i).fma(FloatVector.fromArray(FLOATS, b, i), sum);
+        float total = sum.reduceLanes(VectorOperators.ADD);
+        for(; i<to; i++)
+            total += a[i] * b[i];
+        return total;
+    }
+
+    @Override
+    double dot(float[] x, double[] v, int length){
+        DoubleVector sum = DoubleVector.zero(DOUBLES);
+        int i = 0, upper = DOUBLES.loopBound(length);
+        for(; i<upper; i += DOUBLES.length())
+            sum = widen(x, i).fma(DoubleVector.fromArray(DOUBLES, v, i), sum);
+        double total = sum.reduceLanes(VectorOperators.ADD);
+        for(; i<length; i++)
+            total += x[i] * v[i];
+        return total;
+    }
+
+    @Override
+    void addScaled(double scale, double[] x, double[] v, int length){
+        DoubleVector s = DoubleVector.broadcast(DOUBLES, scale);
+        int i = 0, upper = DOUBLES.loopBound(length);
+        for(; i<upper; i += DOUBLES.length())
+            DoubleVector.fromArray(DOUBLES, x, i).fma(s, DoubleVector.fromArray(DOUBLES, v, i)).intoArray(v, i);
+        for(; i<length; i++)
+            v[i] += scale * x[i];
+    }
+
+    @Override
+    void addScaled(double scale, float[] x, double[] v, int length){
+        DoubleVector s = DoubleVector.broadcast(DOUBLES, scale);
+        int i = 0, upper = DOUBLES.loopBound(length);
+        for(; i<upper; i += DOUBLES.length())
+            widen(x, i).fma(s, DoubleVector.fromArray(DOUBLES, v, i)).intoArray(v, i);
+        for(; i<length; i++)
+            v[i] += scale * x[i];
+    }
+
+    private static DoubleVector widen(float[] x, int i){
+        return (DoubleVector)FloatVector.fromArray(HALF_FLOATS, x, i).convertShape(VectorOperators.F2D, DOUBLES, 0);
+    }
+}
@@ -0,0 +1,68 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+//appending rows keeps the columns pruned when the training data was processed.
+//the stage cache lives in the test's own directory, so every run starts cold and nothing is written to the repo
+class AppendPruningTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void appendKeepsPrunedColumns() throws IOException {
+        //Flat is constant, so it encodes as a column of zeros (no range), and Empty is only NA, so with no
+        //min, max or fill it encodes as NaN: CONSTANT pruning has to catch both
+        Path train = write("train.csv",
+                "Id,Area,Flat,Empty,Zone,SalePrice",
+                "1,1200,5,NA,RL,150000",
+                "2,1500,5,NA,RM,180000",
+                "3,900,5,NA,RL,120000",
+                "4,2000,5,NA,RL,240000",
+                "5,1100,5,NA,RM,140000",
+                "6,1700,5,NA,RL,200000");
+        Path appended = write("new.csv",
+                "Id,Area,Flat,Empty,Zone,SalePrice",
+                "7,1300,7,NA,RL,160000",
+                "8,1800,5,NA,RM,210000",
+                "9,1000,5,NA,RL,130000");
+        String processed = directory.toString() + "/";
+        CSVHandler csvh = new CSVHandler(false, directory.resolve("cache").toString() + "/");
+
+        Dataset data = csvh.processCSV(train.toString(), processed, "SalePrice", true,
+                new ArrayList<>(), new ArrayList<>(List.of("Id")));
+        Dataset encoded = csvh.readAllProcessedData(processed);
+        for(double d : encoded.getColumn(Arrays.asList(encoded.getNames()).indexOf("Flat")))
+            assertEquals(0, d, "a zero-range field encodes as 0");
+        for(double d : encoded.getColumn(Arrays.asList(encoded.getNames()).indexOf("Empty")))
+            assertTrue(Double.isNaN(d), "a field with only NA encodes as NaN");
+        for(String name : List.of("Flat", "Empty")){
+            assertTrue(pruned(csvh, processed).contains(name), name + " is pruned when the data is processed");
+            assertTrue(!Arrays.asList(data.getNames()).contains(name));
+        }
+
+        Dataset all = csvh.appendCSV(appended.toString(), processed, "SalePrice");
+        for(String name : List.of("Flat", "Empty")){
+            assertTrue(pruned(csvh, processed).contains(name), name + " is still pruned after appending");
+            assertTrue(!Arrays.asList(all.getNames()).contains(name));
+        }
+        assertEquals(9, all.numRows());
+        assertEquals(data.numColumns(), all.numColumns());
+    }
+
+    private List<String> pruned(CSVHandler csvh, String processed){
+        return Arrays.asList(csvh.readNormalizationFactors(processed + "normalizationFactors.csv").getPruned());
+    }
+
+    private Path write(String name, String... lines) throws IOException {
+        return Files.write(directory.resolve(name), Arrays.asList(lines));
+    }
+}